@@ -7,6 +7,12 @@ import android.content.Context
 import android.content.Intent
 import android.os.Build
 import android.util.Log
+import com.mypdf.ocrpdfapp.render.CacheRegistry
+import com.mypdf.ocrpdfapp.render.PageColorSettings
+import com.mypdf.ocrpdfapp.render.PageDiskCache
+import com.mypdf.ocrpdfapp.render.PageGeometryStore
+import com.mypdf.ocrpdfapp.render.RenderConfigPolicy
+import com.mypdf.ocrpdfapp.render.ThumbnailDiskCache
 import com.tom_roush.pdfbox.android.PDFBoxResourceLoader
 
 class PdfApplication : Application() {
@@ -29,6 +35,21 @@ class PdfApplication : Application() {
         // Initialize PDFBox
         Companion.applicationContext = this
         PDFBoxResourceLoader.init(applicationContext)
+        PageDiskCache.init(this)
+        PageGeometryStore.init(this)
+        ThumbnailDiskCache.init(this)
+        RenderConfigPolicy.init(this)
+        PageColorSettings.init(this)
+    }
+
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        CacheRegistry.onTrimMemory(level)
+    }
+
+    override fun onLowMemory() {
+        super.onLowMemory()
+        CacheRegistry.onTrimMemory(TRIM_MEMORY_COMPLETE)
     }
 
 
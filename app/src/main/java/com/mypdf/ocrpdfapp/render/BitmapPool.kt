@@ -0,0 +1,146 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.graphics.Bitmap
+import android.util.Log
+
+/**
+ * Shared pool of mutable bitmaps for every page-render path, so page flips and thumbnails
+ * stop allocating a fresh ARGB_8888 bitmap each time.
+ *
+ * Bitmaps are bucketed by allocation size in quarter-octave classes. A request is served
+ * from its own class or the next one up and reconfigured to the requested dimensions.
+ * Only release bitmaps that nothing draws anymore.
+ */
+object BitmapPool : TrimmableCache {
+    private const val TAG = "BitmapPool"
+    private const val CLASSES_PER_OCTAVE = 4
+
+    private val maxBytes = Runtime.getRuntime().maxMemory() / 16
+    private val buckets = HashMap<Int, ArrayDeque<Bitmap>>()
+    private var pooledBytes = 0L
+
+    private var hits = 0L
+    private var misses = 0L
+    private var evictions = 0L
+
+    override val cacheName = "Bitmap pool"
+
+    // Pooled bitmaps are only spare allocations, so they are the first to go
+    override val cachePriority = CachePriority.LOW
+
+    init {
+        CacheRegistry.register(this)
+    }
+
+    @JvmStatic
+    @JvmOverloads
+    fun acquire(width: Int, height: Int, config: Bitmap.Config = Bitmap.Config.ARGB_8888): Bitmap {
+        val needed = width.toLong() * height * bytesPerPixel(config)
+        val sizeClass = sizeClassFor(needed)
+        synchronized(this) {
+            val reused = takeFrom(sizeClass, needed) ?: takeFrom(sizeClass + 1, needed)
+            if (reused != null) {
+                try {
+                    reused.reconfigure(width, height, config)
+                    reused.setHasAlpha(true)
+                    reused.eraseColor(0)
+                    hits++
+                    RenderMetrics.recordLookup("bitmap pool", true)
+                    return reused
+                } catch (e: IllegalArgumentException) {
+                    reused.recycle()
+                }
+            }
+            misses++
+        }
+        RenderMetrics.recordLookup("bitmap pool", false)
+        RenderMetrics.recordAllocation(needed)
+        return Bitmap.createBitmap(width, height, config)
+    }
+
+    /** Returns a bitmap to the pool once nothing draws it anymore. */
+    @JvmStatic
+    fun release(bitmap: Bitmap?) {
+        if (bitmap == null || bitmap.isRecycled) return
+        if (!bitmap.isMutable) {
+            bitmap.recycle()
+            return
+        }
+        val size = bitmap.allocationByteCount.toLong()
+        synchronized(this) {
+            val bucket = buckets.getOrPut(sizeClassFor(size)) { ArrayDeque() }
+            if (bucket.any { it === bitmap }) return
+            if (size > maxBytes) {
+                evictions++
+                bitmap.recycle()
+                return
+            }
+            trimTo(maxBytes - size)
+            bucket.addLast(bitmap)
+            pooledBytes += size
+        }
+    }
+
+    override fun currentBytes(): Long = synchronized(this) { pooledBytes }
+
+    override fun maxBytes(): Long = maxBytes
+
+    override fun trimToFraction(fraction: Float) {
+        synchronized(this) {
+            trimTo((maxBytes * fraction).toLong())
+            Log.d(TAG, stats())
+        }
+    }
+
+    @JvmStatic
+    fun stats(): String {
+        synchronized(this) {
+            val total = hits + misses
+            val hitRate = if (total > 0) hits * 100 / total else 0
+            return "hits=$hits misses=$misses hitRate=$hitRate% evictions=$evictions pooled=${pooledBytes / 1024} KB"
+        }
+    }
+
+    private fun takeFrom(sizeClass: Int, needed: Long): Bitmap? {
+        val bucket = buckets[sizeClass] ?: return null
+        val iterator = bucket.iterator()
+        while (iterator.hasNext()) {
+            val candidate = iterator.next()
+            if (candidate.isRecycled) {
+                iterator.remove()
+                continue
+            }
+            if (candidate.allocationByteCount >= needed) {
+                iterator.remove()
+                pooledBytes -= candidate.allocationByteCount
+                return candidate
+            }
+        }
+        return null
+    }
+
+    // Drops the largest pooled bitmaps first; they are the hardest to reuse
+    private fun trimTo(targetBytes: Long) {
+        while (pooledBytes > targetBytes) {
+            val largest = buckets.keys.filter { buckets[it]!!.isNotEmpty() }.maxOrNull() ?: break
+            val victim = buckets[largest]!!.removeFirst()
+            pooledBytes -= victim.allocationByteCount
+            evictions++
+            victim.recycle()
+        }
+    }
+
+    private fun sizeClassFor(bytes: Long): Int {
+        if (bytes <= 1) return 0
+        // log2 in quarter steps, rounded up
+        return Math.ceil(Math.log(bytes.toDouble()) / Math.log(2.0) * CLASSES_PER_OCTAVE).toInt()
+    }
+
+    private fun bytesPerPixel(config: Bitmap.Config): Int {
+        return when (config) {
+            Bitmap.Config.ALPHA_8 -> 1
+            Bitmap.Config.RGB_565 -> 2
+            else -> 4
+        }
+    }
+}
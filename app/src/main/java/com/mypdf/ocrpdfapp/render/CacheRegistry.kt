@@ -0,0 +1,128 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.ComponentCallbacks2
+import android.util.Log
+import android.util.LruCache
+import java.lang.ref.WeakReference
+
+/** Order in which caches give up memory: [LOW] first, [HIGH] only under severe pressure. */
+enum class CachePriority {
+    LOW,
+    NORMAL,
+    HIGH
+}
+
+interface TrimmableCache {
+    val cacheName: String
+    val cachePriority: CachePriority
+
+    fun currentBytes(): Long
+
+    fun maxBytes(): Long
+
+    /** Shrinks the cache to [fraction] of its maximum size; 0 empties it. */
+    fun trimToFraction(fraction: Float)
+}
+
+data class CacheUsage(
+    val name: String,
+    val priority: CachePriority,
+    val currentBytes: Long,
+    val maxBytes: Long
+)
+
+/**
+ * Every in-memory cache in the app registers here so memory pressure is handled in one
+ * place. On each trim level the caches shrink in tiers by [CachePriority], instead of each
+ * cache ignoring the signal or dropping everything at once.
+ *
+ * Caches are held weakly, so a cache owned by a screen or ViewModel that is gone without
+ * unregistering doesn't leak. Trimming runs on the thread that delivers onTrimMemory (main).
+ */
+object CacheRegistry {
+    private const val TAG = "CacheRegistry"
+
+    private val caches = ArrayList<WeakReference<TrimmableCache>>()
+
+    @JvmStatic
+    fun register(cache: TrimmableCache) {
+        synchronized(caches) {
+            caches.removeAll { it.get() == null || it.get() === cache }
+            caches.add(WeakReference(cache))
+        }
+    }
+
+    @JvmStatic
+    fun unregister(cache: TrimmableCache) {
+        synchronized(caches) {
+            caches.removeAll { it.get() == null || it.get() === cache }
+        }
+    }
+
+    @JvmStatic
+    fun onTrimMemory(level: Int) {
+        val before = totalBytes()
+        for (cache in liveCaches()) {
+            val fraction = fractionFor(level, cache.cachePriority)
+            if (fraction < 1f) cache.trimToFraction(fraction)
+        }
+        Log.d(TAG, "Trim level $level: ${before / 1024} KB -> ${totalBytes() / 1024} KB")
+    }
+
+    fun snapshot(): List<CacheUsage> {
+        return liveCaches()
+            .map { CacheUsage(it.cacheName, it.cachePriority, it.currentBytes(), it.maxBytes()) }
+            .sortedWith(compareBy<CacheUsage> { it.priority }.thenBy { it.name })
+    }
+
+    fun totalBytes(): Long = liveCaches().sumOf { it.currentBytes() }
+
+    /**
+     * Adapts an [LruCache] whose sizeOf() counts in units of [bytesPerUnit] bytes. Keep a
+     * reference to the result for as long as the cache lives, since the registry holds it weakly.
+     */
+    fun lruCache(
+        name: String,
+        priority: CachePriority,
+        cache: LruCache<*, *>,
+        bytesPerUnit: Long = 1
+    ): TrimmableCache = object : TrimmableCache {
+        override val cacheName = name
+        override val cachePriority = priority
+
+        override fun currentBytes(): Long = cache.size().toLong() * bytesPerUnit
+
+        override fun maxBytes(): Long = cache.maxSize().toLong() * bytesPerUnit
+
+        override fun trimToFraction(fraction: Float) {
+            if (fraction <= 0f) cache.evictAll() else cache.trimToSize((cache.maxSize() * fraction).toInt())
+        }
+    }
+
+    private fun liveCaches(): List<TrimmableCache> {
+        synchronized(caches) {
+            caches.removeAll { it.get() == null }
+            return caches.mapNotNull { it.get() }
+        }
+    }
+
+    private fun fractionFor(level: Int, priority: CachePriority): Float {
+        return when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE -> 0f
+            level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> when (priority) {
+                CachePriority.HIGH -> 0.5f
+                else -> 0f
+            }
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> when (priority) {
+                CachePriority.LOW -> 0f
+                CachePriority.NORMAL -> 0.5f
+                CachePriority.HIGH -> 1f
+            }
+            level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN -> if (priority == CachePriority.LOW) 0f else 1f
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE -> if (priority == CachePriority.LOW) 0.5f else 1f
+            else -> 1f
+        }
+    }
+}
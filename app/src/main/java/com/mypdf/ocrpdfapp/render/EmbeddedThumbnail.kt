@@ -0,0 +1,103 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Rect
+import android.os.ParcelFileDescriptor
+import android.util.Log
+import com.itextpdf.text.io.RandomAccessSourceFactory
+import com.itextpdf.text.pdf.PRStream
+import com.itextpdf.text.pdf.PdfName
+import com.itextpdf.text.pdf.PdfReader
+import com.itextpdf.text.pdf.RandomAccessFileOrArray
+import com.itextpdf.text.pdf.parser.PdfImageObject
+import com.mypdf.ocrpdfapp.model.PdfFile
+import java.io.FileInputStream
+import kotlin.math.abs
+import kotlin.math.roundToInt
+
+/**
+ * The `/Thumb` image that scanners and Acrobat often store with a page, read so the library
+ * can show the first page without rasterizing it. The reader runs in partial mode, so only
+ * the xref, the path through the page tree to page 1 and the thumbnail stream are read.
+ */
+internal object EmbeddedThumbnail {
+    private const val TAG = "EmbeddedThumbnail"
+
+    // Upscaled further than this they look blurry next to renders, and they are cached as one
+    private const val MIN_WIDTH_RATIO = 0.75f
+
+    // Thumbnails that don't match the page shape are for another rotation or stale
+    private const val MAX_ASPECT_DIFFERENCE = 0.1f
+
+    private val scalePaint = Paint(Paint.FILTER_BITMAP_FLAG)
+
+    /**
+     * Page 1's embedded thumbnail scaled to what a [width] px render would be, with the page
+     * scale that size stands for, or null when there is no usable one. Must run off the main
+     * thread.
+     */
+    fun load(context: Context, pdf: PdfFile, width: Int): Pair<Float, Bitmap>? {
+        val fileDescriptor = try {
+            when {
+                pdf.uri != null -> context.contentResolver.openFileDescriptor(pdf.uri, "r")
+                pdf.file != null -> ParcelFileDescriptor.open(pdf.file, ParcelFileDescriptor.MODE_READ_ONLY)
+                else -> null
+            }
+        } catch (e: Exception) {
+            null
+        } ?: return null
+        try {
+            val channel = FileInputStream(fileDescriptor.fileDescriptor).channel
+            val reader = PdfReader(RandomAccessFileOrArray(RandomAccessSourceFactory().createSource(channel)), null)
+            try {
+                if (reader.numberOfPages == 0) return null
+                val stream = reader.getPageN(1).getAsStream(PdfName.THUMB) as? PRStream ?: return null
+                val pageSize = reader.getPageSizeWithRotation(1)
+                val pageWidth = pageSize.width.roundToInt()
+                val pageHeight = pageSize.height.roundToInt()
+                val bytes = PdfImageObject(stream).imageAsBytes
+                return decode(bytes, pageWidth, pageHeight, width)
+            } finally {
+                reader.close()
+            }
+        } catch (e: Exception) {
+            // Unsupported image filters, encryption and broken files all mean "render it"
+            Log.d(TAG, "No embedded thumbnail for ${pdf.name}: ${e.message}")
+            return null
+        } finally {
+            fileDescriptor.close()
+        }
+    }
+
+    private fun decode(bytes: ByteArray, pageWidth: Int, pageHeight: Int, width: Int): Pair<Float, Bitmap>? {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.size, bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0 || pageWidth <= 0 || pageHeight <= 0) return null
+        val pageAspect = pageWidth.toFloat() / pageHeight
+        val imageAspect = bounds.outWidth.toFloat() / bounds.outHeight
+        if (abs(imageAspect - pageAspect) / pageAspect > MAX_ASPECT_DIFFERENCE) return null
+
+        // Same size and key a render at this width would get
+        val scale = PageGeometryTable.fitScale(pageWidth, pageHeight, width, Int.MAX_VALUE)
+        val targetWidth = (pageWidth * scale).toInt().coerceAtLeast(1)
+        val targetHeight = (pageHeight * scale).toInt().coerceAtLeast(1)
+        if (bounds.outWidth < targetWidth * MIN_WIDTH_RATIO) return null
+
+        val options = BitmapFactory.Options().apply { inPreferredConfig = Bitmap.Config.RGB_565 }
+        val image = BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options) ?: return null
+        try {
+            val bitmap = BitmapPool.acquire(targetWidth, targetHeight)
+            val canvas = Canvas(bitmap)
+            canvas.drawColor(Color.WHITE)
+            canvas.drawBitmap(image, null, Rect(0, 0, targetWidth, targetHeight), scalePaint)
+            return scale to RenderConfigPolicy.finish(bitmap, BitmapUse.THUMBNAIL)
+        } finally {
+            image.recycle()
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.graphics.Bitmap
+import android.util.LruCache
+import com.mypdf.ocrpdfapp.model.PdfFile
+import java.security.MessageDigest
+import java.util.IdentityHashMap
+
+/**
+ * A cached page. [use] is part of the key because it decides the bitmap config: a hardware
+ * display page can't be drawn into a thumbnail, and an RGB_565 thumbnail is too coarse to
+ * display as a page.
+ */
+data class PageKey @JvmOverloads constructor(
+    val fingerprint: String,
+    val pageIndex: Int,
+    val scale: Float,
+    val use: BitmapUse = BitmapUse.DISPLAY_PAGE
+)
+
+/**
+ * Identifies a document version: the same file edited in place gets a new fingerprint,
+ * so stale pages are never served from the cache.
+ *
+ * The time is compared in seconds. MediaStore rows only carry seconds, while files opened
+ * by path have milliseconds, and both must agree for a document to reuse its cache.
+ */
+val PdfFile.fingerprint: String
+    get() = "${uri ?: path}:$size:${lastModified / 1000}"
+
+/** Fixed-length, file-name-safe form of a fingerprint for on-disk entries. */
+internal fun hashFingerprint(fingerprint: String): String {
+    val digest = MessageDigest.getInstance("SHA-1").digest(fingerprint.toByteArray())
+    return digest.joinToString("") { "%02x".format(it) }
+}
+
+/**
+ * Rendered pages shared across the viewer. Evicted pages go back to [BitmapPool] unless a
+ * composable still draws them; pinned pages are returned when the last pin is dropped.
+ */
+object PageBitmapCache : TrimmableCache {
+    // Rendered pages are large, so budget in bytes rather than entries
+    private val maxBytes = (Runtime.getRuntime().maxMemory() / 8).toInt()
+
+    private val pins = IdentityHashMap<Bitmap, Int>()
+    private val evictedWhilePinned = IdentityHashMap<Bitmap, Boolean>()
+
+    override val cacheName = "Rendered pages"
+    override val cachePriority = CachePriority.NORMAL
+
+    init {
+        CacheRegistry.register(this)
+    }
+
+    private val memoryCache = object : LruCache<PageKey, Bitmap>(maxBytes) {
+        override fun sizeOf(key: PageKey, bitmap: Bitmap): Int {
+            return bitmap.allocationByteCount
+        }
+
+        override fun entryRemoved(evicted: Boolean, key: PageKey, oldValue: Bitmap, newValue: Bitmap?) {
+            if (oldValue === newValue) return
+            synchronized(this@PageBitmapCache) {
+                if (pins.containsKey(oldValue)) {
+                    evictedWhilePinned[oldValue] = true
+                } else {
+                    BitmapPool.release(oldValue)
+                }
+            }
+        }
+    }
+
+    fun get(key: PageKey): Bitmap? {
+        return memoryCache.get(key)
+    }
+
+    /** Looks up a page and pins it in one step so it can't be recycled before it is drawn. */
+    @Synchronized
+    fun getPinned(key: PageKey): Bitmap? {
+        return memoryCache.get(key)?.also { pin(it) }
+    }
+
+    @Synchronized
+    fun put(key: PageKey, bitmap: Bitmap, pinned: Boolean = false) {
+        if (pinned) pin(bitmap)
+        memoryCache.put(key, bitmap)
+    }
+
+    /**
+     * The smallest cached rendering of the page above [scale], pinned, so a smaller size can
+     * be made for [use] by downscaling instead of rendering. Thumbnails and previews only
+     * stand in for their own use, as they are lower quality than a full render.
+     */
+    @Synchronized
+    fun getLargerPinned(fingerprint: String, pageIndex: Int, scale: Float, use: BitmapUse): Pair<PageKey, Bitmap>? {
+        val key = memoryCache.snapshot().keys
+            .filter { it.fingerprint == fingerprint && it.pageIndex == pageIndex && it.scale > scale }
+            .filter { it.use == use || it.use == BitmapUse.DISPLAY_PAGE || it.use == BitmapUse.MUTABLE }
+            .minByOrNull { it.scale } ?: return null
+        val bitmap = memoryCache.get(key) ?: return null
+        pin(bitmap)
+        return key to bitmap
+    }
+
+    /** Adds a pin to a bitmap that is already pinned, for a second holder such as a list cache. */
+    @Synchronized
+    fun addPin(bitmap: Bitmap): Boolean {
+        if (!pins.containsKey(bitmap)) return false
+        pin(bitmap)
+        return true
+    }
+
+    fun contains(key: PageKey): Boolean {
+        return memoryCache.get(key) != null
+    }
+
+    @Synchronized
+    fun unpin(bitmap: Bitmap) {
+        val count = pins[bitmap] ?: return
+        if (count > 1) {
+            pins[bitmap] = count - 1
+            return
+        }
+        pins.remove(bitmap)
+        if (evictedWhilePinned.remove(bitmap) != null) {
+            BitmapPool.release(bitmap)
+        }
+    }
+
+    fun clear() {
+        memoryCache.evictAll()
+    }
+
+    override fun currentBytes(): Long = memoryCache.size().toLong()
+
+    override fun maxBytes(): Long = maxBytes.toLong()
+
+    // Pinned pages stay alive until unpinned, so on screen pages survive even a full trim
+    override fun trimToFraction(fraction: Float) {
+        memoryCache.trimToSize((maxBytes * fraction).toInt())
+    }
+
+    private fun pin(bitmap: Bitmap) {
+        pins[bitmap] = (pins[bitmap] ?: 0) + 1
+    }
+}
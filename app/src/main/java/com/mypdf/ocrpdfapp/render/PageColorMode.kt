@@ -0,0 +1,116 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.graphics.Color
+import android.graphics.ColorMatrixColorFilter
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Ways of tinting pages while they are drawn. Each mode is a 4x5 color matrix in the layout
+ * of [android.graphics.ColorMatrix] (offsets in 0..255), applied as a color filter, so cached
+ * page bitmaps and tiles are shown as they are and never re-rendered for a mode.
+ */
+enum class PageColorMode(val label: String, private val matrix: FloatArray?) {
+    NORMAL("Normal", null),
+
+    // Inverted, with white paper at dark grey and black ink at light grey to soften the glare
+    NIGHT(
+        "Night", floatArrayOf(
+            -0.745f, 0f, 0f, 0f, 220f,
+            0f, -0.745f, 0f, 0f, 220f,
+            0f, 0f, -0.745f, 0f, 220f,
+            0f, 0f, 0f, 1f, 0f
+        )
+    ),
+
+    // The usual sepia weights, scaled so white paper lands on a warm off-white
+    SEPIA(
+        "Sepia", floatArrayOf(
+            0.286f, 0.560f, 0.138f, 0f, 0f,
+            0.270f, 0.532f, 0.130f, 0f, 0f,
+            0.244f, 0.478f, 0.117f, 0f, 0f,
+            0f, 0f, 0f, 1f, 0f
+        )
+    ),
+
+    // Grey, with contrast raised around the middle so faint text darkens and paper stays white
+    HIGH_CONTRAST(
+        "High contrast", floatArrayOf(
+            0.449f, 0.881f, 0.171f, 0f, -96f,
+            0.449f, 0.881f, 0.171f, 0f, -96f,
+            0.449f, 0.881f, 0.171f, 0f, -96f,
+            0f, 0f, 0f, 1f, 0f
+        )
+    );
+
+    /** Filter for views and paints, or null when pages are drawn as rendered. */
+    val colorFilter: ColorMatrixColorFilter? by lazy { matrix?.let { ColorMatrixColorFilter(it) } }
+
+    /** What white paper looks like in this mode, for backgrounds shown before a page is drawn. */
+    val paperColor: Int by lazy {
+        if (matrix == null) {
+            Color.WHITE
+        } else {
+            fun channel(row: Int): Int {
+                val sum = (matrix[row * 5] + matrix[row * 5 + 1] + matrix[row * 5 + 2]) * 255f + matrix[row * 5 + 4]
+                return sum.toInt().coerceIn(0, 255)
+            }
+            Color.rgb(channel(0), channel(1), channel(2))
+        }
+    }
+
+    /** The matrix as a copy, for toolkits that build their own filter (Compose). */
+    fun colorMatrix(): FloatArray? = matrix?.copyOf()
+}
+
+/**
+ * The [PageColorMode] picked by the user, shared by the viewer and the signer and kept
+ * across launches. Switching only changes how pages are drawn, so it is instant.
+ */
+object PageColorSettings {
+    private const val PREFS_NAME = "page_colors"
+    private const val KEY_MODE = "mode"
+
+    /** For views that can't collect [current]; called on the thread that changed the mode. */
+    fun interface Listener {
+        fun onPageColorModeChanged(mode: PageColorMode)
+    }
+
+    private var prefs: SharedPreferences? = null
+    private val listeners = CopyOnWriteArrayList<Listener>()
+    private val _current = MutableStateFlow(PageColorMode.NORMAL)
+
+    val current: StateFlow<PageColorMode> = _current
+
+    @JvmStatic
+    fun init(context: Context) {
+        val stored = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+        prefs = stored
+        val name = stored.getString(KEY_MODE, null)
+        _current.value = PageColorMode.values().firstOrNull { it.name == name } ?: PageColorMode.NORMAL
+    }
+
+    @JvmStatic
+    fun getMode(): PageColorMode = _current.value
+
+    @JvmStatic
+    fun setMode(mode: PageColorMode) {
+        if (_current.value == mode) return
+        _current.value = mode
+        prefs?.edit()?.putString(KEY_MODE, mode.name)?.apply()
+        for (listener in listeners) listener.onPageColorModeChanged(mode)
+    }
+
+    @JvmStatic
+    fun addListener(listener: Listener) {
+        listeners.addIfAbsent(listener)
+    }
+
+    @JvmStatic
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+}
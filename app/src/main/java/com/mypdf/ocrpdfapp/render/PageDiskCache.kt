@@ -0,0 +1,182 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.net.Uri
+import android.os.Build
+import android.provider.DocumentsContract
+import android.provider.OpenableColumns
+import android.util.Log
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.Executors
+
+/**
+ * Rendered pages kept in `cacheDir/pages` as WebP, so reopening an unchanged document is
+ * served from disk instead of PdfRenderer. Files are named after the page key; the least
+ * recently used ones are deleted once the quota is exceeded.
+ *
+ * The scale in a [PageKey] is bitmap pixels per PDF point, quantized by
+ * [PageGeometryTable.fitScale] in both the viewer and the signing viewer, so the two share
+ * entries when they fit the same document to the same quarter-step scale.
+ */
+object PageDiskCache {
+    private const val TAG = "PageDiskCache"
+    private const val DIR_NAME = "pages"
+    private const val MAX_BYTES = 64L * 1024 * 1024
+    private const val QUALITY = 90
+
+    // Encoding runs off the render path; writes are serialized so trimming sees a stable dir
+    private val writer = Executors.newSingleThreadExecutor { Thread(it, "page-disk-cache") }
+
+    private var directory: File? = null
+    private var totalBytes = -1L
+
+    @JvmStatic
+    fun init(context: Context) {
+        directory = File(context.cacheDir, DIR_NAME).apply { mkdirs() }
+    }
+
+    /** Decodes a cached page into a pooled bitmap, or returns null on a miss. */
+    @JvmStatic
+    fun get(key: PageKey): Bitmap? {
+        val file = fileFor(key) ?: return null
+        if (!file.exists()) return null
+        return try {
+            val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+            BitmapFactory.decodeFile(file.path, bounds)
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                file.delete()
+                return null
+            }
+            val options = BitmapFactory.Options().apply {
+                inMutable = true
+                inBitmap = BitmapPool.acquire(bounds.outWidth, bounds.outHeight)
+            }
+            val bitmap = try {
+                BitmapFactory.decodeFile(file.path, options)
+            } catch (e: Exception) {
+                // Also thrown when the pooled bitmap can't be reused, which leaves it with us
+                BitmapPool.release(options.inBitmap)
+                throw e
+            }
+            if (bitmap == null) {
+                BitmapPool.release(options.inBitmap)
+                file.delete()
+                return null
+            }
+            file.setLastModified(System.currentTimeMillis())
+            bitmap
+        } catch (e: Exception) {
+            Log.w(TAG, "Dropping unreadable cache entry ${file.name}", e)
+            file.delete()
+            null
+        }
+    }
+
+    /**
+     * Queues [bitmap] for writing. It is copied first, so the caller may display, pool or
+     * reuse the original right away.
+     */
+    @JvmStatic
+    fun put(key: PageKey, bitmap: Bitmap) {
+        val file = fileFor(key) ?: return
+        if (file.exists()) return
+        val copy = try {
+            BitmapPool.acquire(bitmap.width, bitmap.height).also {
+                Canvas(it).drawBitmap(bitmap, 0f, 0f, null)
+            }
+        } catch (e: OutOfMemoryError) {
+            return
+        }
+        writer.execute {
+            try {
+                write(file, copy)
+            } finally {
+                BitmapPool.release(copy)
+            }
+        }
+    }
+
+    @JvmStatic
+    fun clear() {
+        writer.execute {
+            directory?.listFiles()?.forEach { it.delete() }
+            totalBytes = 0
+        }
+    }
+
+    /**
+     * Fingerprint for documents only known by Uri (the signing flow). Matches
+     * [com.mypdf.ocrpdfapp.model.PdfFile.fingerprint] in shape: uri, size and modification time.
+     */
+    @JvmStatic
+    fun fingerprintFor(context: Context, uri: Uri): String? {
+        if (uri.scheme == "file") {
+            val file = File(uri.path ?: return null)
+            return "$uri:${file.length()}:${file.lastModified()}"
+        }
+        return try {
+            context.contentResolver.query(uri, null, null, null, null)?.use { cursor ->
+                if (!cursor.moveToFirst()) return null
+                val sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE)
+                val modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED)
+                // Without a size there is nothing to tell two versions of the file apart
+                if (sizeIndex < 0 || cursor.isNull(sizeIndex)) return null
+                val modified = if (modifiedIndex >= 0 && !cursor.isNull(modifiedIndex)) cursor.getLong(modifiedIndex) else 0L
+                "$uri:${cursor.getLong(sizeIndex)}:$modified"
+            }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun write(file: File, bitmap: Bitmap) {
+        val temp = File(file.parentFile, file.name + ".tmp")
+        try {
+            FileOutputStream(temp).use { bitmap.compress(webpFormat(), QUALITY, it) }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+                return
+            }
+            if (totalBytes < 0) {
+                totalBytes = directory?.listFiles()?.sumOf { it.length() } ?: 0L
+            } else {
+                totalBytes += file.length()
+            }
+            if (totalBytes > MAX_BYTES) trim()
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not write ${file.name}", e)
+            temp.delete()
+        }
+    }
+
+    // Oldest access first; get() touches the modification time on every hit
+    private fun trim() {
+        val files = directory?.listFiles()?.sortedBy { it.lastModified() } ?: return
+        var bytes = files.sumOf { it.length() }
+        for (file in files) {
+            if (bytes <= MAX_BYTES * 3 / 4) break
+            val length = file.length()
+            if (file.delete()) bytes -= length
+        }
+        totalBytes = bytes
+    }
+
+    private fun fileFor(key: PageKey): File? {
+        val dir = directory ?: return null
+        val scale = Math.round(key.scale * 100)
+        return File(dir, "${hashFingerprint(key.fingerprint)}_${key.pageIndex}_$scale.webp")
+    }
+
+    @Suppress("DEPRECATION")
+    private fun webpFormat(): Bitmap.CompressFormat {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bitmap.CompressFormat.WEBP_LOSSY
+        } else {
+            Bitmap.CompressFormat.WEBP
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.os.ParcelFileDescriptor
+import android.util.Log
+import android.util.LruCache
+import com.itextpdf.text.io.RandomAccessSourceFactory
+import com.itextpdf.text.pdf.PdfReader
+import com.itextpdf.text.pdf.RandomAccessFileOrArray
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+
+/**
+ * Per-document metadata kept in `cacheDir/documents`, keyed by fingerprint. For now this
+ * is the [PageGeometryTable], so reopening a document lays out every page without
+ * touching PdfRenderer.
+ */
+object PageGeometryStore {
+    private const val TAG = "PageGeometryStore"
+    private const val DIR_NAME = "documents"
+
+    private val recent = LruCache<String, PageGeometryTable>(16)
+    private var directory: File? = null
+
+    @JvmStatic
+    fun init(context: Context) {
+        directory = File(context.cacheDir, DIR_NAME).apply { mkdirs() }
+    }
+
+    @JvmStatic
+    fun get(fingerprint: String): PageGeometryTable? {
+        recent.get(fingerprint)?.let { return it }
+        val file = fileFor(fingerprint) ?: return null
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(FileInputStream(file).buffered()).use { PageGeometryTable.readFrom(it) }
+                .also { recent.put(fingerprint, it) }
+        } catch (e: Exception) {
+            Log.w(TAG, "Dropping unreadable geometry ${file.name}", e)
+            file.delete()
+            null
+        }
+    }
+
+    @JvmStatic
+    fun put(fingerprint: String, table: PageGeometryTable) {
+        recent.put(fingerprint, table)
+        val file = fileFor(fingerprint) ?: return
+        val temp = File(file.parentFile, file.name + ".tmp")
+        try {
+            DataOutputStream(FileOutputStream(temp).buffered()).use { table.writeTo(it) }
+            if (!temp.renameTo(file)) temp.delete()
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not write ${file.name}", e)
+            temp.delete()
+        }
+    }
+
+    /**
+     * Reads /Rotate for every page. PdfRenderer does not expose it, so this opens the file
+     * with iText in partial mode, which only parses the page tree. Pages default to 0 on
+     * failure. Takes ownership of [fileDescriptor]; pass a dup() of one still in use.
+     */
+    @JvmStatic
+    fun readRotations(fileDescriptor: ParcelFileDescriptor, pageCount: Int): IntArray {
+        val rotations = IntArray(pageCount)
+        try {
+            val channel = FileInputStream(fileDescriptor.fileDescriptor).channel
+            val source = RandomAccessSourceFactory().createSource(channel)
+            val reader = PdfReader(RandomAccessFileOrArray(source), null)
+            try {
+                for (i in 0 until minOf(pageCount, reader.numberOfPages)) {
+                    rotations[i] = reader.getPageRotation(i + 1)
+                }
+            } finally {
+                reader.close()
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not read page rotations", e)
+        } finally {
+            try {
+                fileDescriptor.close()
+            } catch (e: Exception) {
+            }
+        }
+        return rotations
+    }
+
+    private fun fileFor(fingerprint: String): File? {
+        val dir = directory ?: return null
+        return File(dir, "${hashFingerprint(fingerprint)}.geometry")
+    }
+}
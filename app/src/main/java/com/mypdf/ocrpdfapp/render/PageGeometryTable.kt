@@ -0,0 +1,81 @@
+package com.mypdf.ocrpdfapp.render
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import kotlin.math.floor
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Page sizes (in PDF points) and /Rotate values for every page of a document, gathered in
+ * one pass so layout can size pages without opening them again.
+ */
+class PageGeometryTable(
+    private val widths: IntArray,
+    private val heights: IntArray,
+    private val rotations: IntArray = IntArray(widths.size)
+) {
+    val pageCount: Int
+        get() = widths.size
+
+    fun width(pageIndex: Int): Int = widths[pageIndex]
+
+    fun height(pageIndex: Int): Int = heights[pageIndex]
+
+    /** Page rotation in degrees. Sizes already account for it. */
+    fun rotation(pageIndex: Int): Int = rotations[pageIndex]
+
+    fun aspectRatio(pageIndex: Int): Float {
+        return if (heights[pageIndex] > 0) widths[pageIndex].toFloat() / heights[pageIndex] else 1f
+    }
+
+    /**
+     * Scale (bitmap pixels per point) that fits the page into a view of the given pixel size.
+     * It is quantized to quarter steps so small layout changes reuse cached pages, and capped
+     * so one page never costs more than [maxBytes] however large it is.
+     */
+    fun fitScale(pageIndex: Int, viewWidth: Int, viewHeight: Int, maxBytes: Long = MAX_PAGE_BYTES): Float {
+        return fitScale(widths[pageIndex], heights[pageIndex], viewWidth, viewHeight, maxBytes)
+    }
+
+    fun writeTo(output: DataOutputStream) {
+        output.writeInt(FORMAT_VERSION)
+        output.writeInt(pageCount)
+        for (i in 0 until pageCount) {
+            output.writeInt(widths[i])
+            output.writeInt(heights[i])
+            output.writeShort(rotations[i])
+        }
+    }
+
+    companion object {
+        private const val FORMAT_VERSION = 1
+        const val MAX_PAGE_BYTES = 16L * 1024 * 1024
+
+        /** [fitScale] for a page measured outside a table. */
+        fun fitScale(pageWidth: Int, pageHeight: Int, viewWidth: Int, viewHeight: Int, maxBytes: Long = MAX_PAGE_BYTES): Float {
+            val width = pageWidth.coerceAtLeast(1)
+            val height = pageHeight.coerceAtLeast(1)
+            val fit = minOf(viewWidth.toFloat() / width, viewHeight.toFloat() / height)
+            val cap = sqrt(maxBytes / 4.0 / (width.toLong() * height)).toFloat()
+            val quantized = minOf((fit * 4).roundToInt() / 4f, floor(cap * 4) / 4f)
+            return quantized.coerceAtLeast(0.25f)
+        }
+
+        fun readFrom(input: DataInputStream): PageGeometryTable {
+            if (input.readInt() != FORMAT_VERSION) throw IOException("Unknown geometry format")
+            val count = input.readInt()
+            if (count < 0) throw IOException("Corrupt geometry table")
+            val widths = IntArray(count)
+            val heights = IntArray(count)
+            val rotations = IntArray(count)
+            for (i in 0 until count) {
+                widths[i] = input.readInt()
+                heights[i] = input.readInt()
+                rotations[i] = input.readShort().toInt()
+            }
+            return PageGeometryTable(widths, heights, rotations)
+        }
+    }
+}
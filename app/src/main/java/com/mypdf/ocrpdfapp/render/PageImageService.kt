@@ -0,0 +1,261 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Rect
+import android.net.Uri
+import android.os.Build
+import android.os.SystemClock
+import android.util.Log
+import com.mypdf.ocrpdfapp.model.PdfFile
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.withContext
+import kotlin.math.roundToInt
+
+/**
+ * The one place screens get page images from. A document is opened once however many
+ * screens show it, two requests for the same page and scale share one render, and a page
+ * asked for at a target size is downscaled from a larger cached rendering when there is one.
+ *
+ * Pages returned by [getPage] are pinned in [PageBitmapCache]; hand them back with [release]
+ * once they are off screen. Sessions from [openSession] go back through [releaseSession].
+ */
+object PageImageService {
+    private const val TAG = "PageImageService"
+
+    // Recently released documents stay open so going back to them skips the open
+    private const val MAX_IDLE_SESSIONS = 2
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val sessions = HashMap<String, SharedSession>()
+    private val opening = HashMap<String, Deferred<PdfRenderSession>>()
+    private val idle = ArrayDeque<String>()
+    private val inFlight = HashMap<PageKey, InFlight>()
+    private val scalePaint = Paint(Paint.FILTER_BITMAP_FLAG)
+
+    private class SharedSession(val session: PdfRenderSession) {
+        var refs = 0
+    }
+
+    private class InFlight(val result: Deferred<Boolean>) {
+        var waiters = 0
+    }
+
+    suspend fun openSession(context: Context, pdfFile: PdfFile): PdfRenderSession {
+        val appContext = context.applicationContext
+        return openSession(pdfFile.fingerprint) { PdfRenderSession.open(appContext, pdfFile) }
+    }
+
+    /** For documents only known by Uri; unversioned ones get a session of their own. */
+    suspend fun openSession(context: Context, uri: Uri): PdfRenderSession {
+        val appContext = context.applicationContext
+        val fingerprint = withContext(Dispatchers.IO) { PageDiskCache.fingerprintFor(appContext, uri) }
+            ?: "$uri:${SystemClock.elapsedRealtimeNanos()}"
+        val pdfFile = PdfFile(uri.lastPathSegment ?: "document", uri.toString(), 0, 0, null, uri)
+        return openSession(fingerprint) { PdfRenderSession.open(appContext, pdfFile, fingerprint) }
+    }
+
+    private suspend fun openSession(fingerprint: String, open: suspend () -> PdfRenderSession): PdfRenderSession {
+        while (true) {
+            val pending = synchronized(sessions) {
+                sessions[fingerprint]?.let { shared ->
+                    shared.refs++
+                    idle.remove(fingerprint)
+                    return shared.session
+                }
+                // Callers for the same document share one open; other documents don't wait for it
+                opening.getOrPut(fingerprint) {
+                    scope.async {
+                        try {
+                            val session = open()
+                            // Tracked as idle even if every caller left; those still waiting reference it below
+                            synchronized(sessions) {
+                                sessions[fingerprint] = SharedSession(session)
+                                markIdle(fingerprint)
+                            }
+                            session
+                        } finally {
+                            synchronized(sessions) { opening.remove(fingerprint) }
+                        }
+                    }
+                }
+            }
+            val session = pending.await()
+            synchronized(sessions) {
+                val shared = sessions[fingerprint]
+                if (shared != null && shared.session === session) {
+                    shared.refs++
+                    idle.remove(fingerprint)
+                    return session
+                }
+            }
+            // Closed as idle before this caller got to it, so open again
+        }
+    }
+
+    /** Drops one reference to [session]; the last one leaves it open as idle for a while. */
+    fun releaseSession(session: PdfRenderSession) {
+        synchronized(sessions) {
+            val shared = sessions[session.fingerprint]
+            if (shared == null || shared.session !== session) {
+                session.close()
+                return
+            }
+            shared.refs--
+            if (shared.refs <= 0) markIdle(session.fingerprint)
+        }
+    }
+
+    /** Pinned page at [scale], rendered, read from disk or downscaled when not in memory. */
+    suspend fun getPage(
+        session: PdfRenderSession,
+        pageIndex: Int,
+        scale: Float,
+        use: BitmapUse = BitmapUse.DISPLAY_PAGE
+    ): Bitmap? {
+        val key = PageKey(session.fingerprint, pageIndex, scale, use)
+        val cached = PageBitmapCache.getPinned(key)
+        RenderMetrics.recordLookup("page memory", cached != null)
+        if (cached != null) return cached
+        val start = RenderMetrics.now()
+        // A second pass covers the page being evicted between loading and pinning
+        repeat(2) {
+            if (!load(session, key, use)) return null
+            PageBitmapCache.getPinned(key)?.let {
+                RenderMetrics.record(RenderStage.PAGE_TOTAL, start)
+                return it
+            }
+        }
+        return null
+    }
+
+    /** Pinned page fitted into a [targetWidth] x [targetHeight] pixel box. */
+    suspend fun getPage(
+        session: PdfRenderSession,
+        pageIndex: Int,
+        targetWidth: Int,
+        targetHeight: Int,
+        use: BitmapUse = BitmapUse.DISPLAY_PAGE
+    ): Bitmap? {
+        return getPage(session, pageIndex, session.fitScale(pageIndex, targetWidth, targetHeight), use)
+    }
+
+    /** Loads a page into [PageBitmapCache] without pinning it. */
+    suspend fun prefetch(
+        session: PdfRenderSession,
+        pageIndex: Int,
+        scale: Float,
+        use: BitmapUse = BitmapUse.DISPLAY_PAGE
+    ) {
+        val key = PageKey(session.fingerprint, pageIndex, scale, use)
+        if (!PageBitmapCache.contains(key)) load(session, key, use)
+    }
+
+    /** Hands back a page from [getPage]. */
+    fun release(bitmap: Bitmap?) {
+        bitmap?.let { PageBitmapCache.unpin(it) }
+    }
+
+    /** Pins a page from [getPage] again for another holder; false when it is no longer pinned. */
+    fun retain(bitmap: Bitmap): Boolean = PageBitmapCache.addPin(bitmap)
+
+    /**
+     * An unpinned [width] x [height] copy of the page, owned by the caller, made from a cached
+     * rendering at [scale] or larger. For renderers outside the service (the signer) that
+     * want to skip a render the viewer already did. Must run off the main thread.
+     */
+    @JvmStatic
+    fun copyFromCache(fingerprint: String, pageIndex: Int, scale: Float, width: Int, height: Int, use: BitmapUse): Bitmap? {
+        val exact = PageKey(fingerprint, pageIndex, scale)
+        val source = PageBitmapCache.getPinned(exact)
+            ?: PageBitmapCache.getLargerPinned(fingerprint, pageIndex, scale, use)?.second
+        RenderMetrics.recordLookup("page downscale", source != null)
+        source ?: return null
+        try {
+            return scaled(source, width, height, use)
+        } finally {
+            PageBitmapCache.unpin(source)
+        }
+    }
+
+    private suspend fun load(session: PdfRenderSession, key: PageKey, use: BitmapUse): Boolean {
+        val entry = synchronized(inFlight) {
+            val running = inFlight[key]?.takeUnless { it.result.isCompleted }
+            (running ?: InFlight(scope.async(start = CoroutineStart.LAZY) { produce(session, key, use) })
+                .also { inFlight[key] = it })
+                .also { it.waiters++ }
+        }
+        try {
+            return entry.result.await()
+        } finally {
+            synchronized(inFlight) {
+                entry.waiters--
+                if (entry.waiters == 0) {
+                    if (inFlight[key] === entry) inFlight.remove(key)
+                    // Nobody wants the page anymore, so an unfinished render is dropped
+                    entry.result.cancel()
+                }
+            }
+        }
+    }
+
+    private suspend fun produce(session: PdfRenderSession, key: PageKey, use: BitmapUse): Boolean {
+        val bitmap = downscaleFromCache(key, use) ?: session.loadPage(key.pageIndex, key.scale, use) ?: return false
+        PageBitmapCache.put(key, bitmap)
+        return true
+    }
+
+    private fun downscaleFromCache(key: PageKey, use: BitmapUse): Bitmap? {
+        val (largerKey, source) = PageBitmapCache.getLargerPinned(key.fingerprint, key.pageIndex, key.scale, use)
+            ?: run {
+                RenderMetrics.recordLookup("page downscale", false)
+                return null
+            }
+        RenderMetrics.recordLookup("page downscale", true)
+        try {
+            val ratio = key.scale / largerKey.scale
+            val width = (source.width * ratio).roundToInt().coerceAtLeast(1)
+            val height = (source.height * ratio).roundToInt().coerceAtLeast(1)
+            return scaled(source, width, height, use)
+        } finally {
+            PageBitmapCache.unpin(source)
+        }
+    }
+
+    private fun scaled(source: Bitmap, width: Int, height: Int, use: BitmapUse): Bitmap? {
+        // Software canvases can't read hardware bitmaps
+        val readable = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && source.config == Bitmap.Config.HARDWARE) {
+            source.copy(Bitmap.Config.ARGB_8888, false) ?: return null
+        } else {
+            source
+        }
+        try {
+            val bitmap = BitmapPool.acquire(width, height)
+            val canvas = Canvas(bitmap)
+            canvas.drawColor(Color.WHITE)
+            canvas.drawBitmap(readable, null, Rect(0, 0, width, height), scalePaint)
+            return RenderConfigPolicy.finish(bitmap, use)
+        } catch (e: OutOfMemoryError) {
+            Log.w(TAG, "No memory to downscale a ${source.width}x${source.height} page")
+            return null
+        } finally {
+            if (readable !== source) readable.recycle()
+        }
+    }
+
+    private fun markIdle(fingerprint: String) {
+        idle.remove(fingerprint)
+        idle.addLast(fingerprint)
+        while (idle.size > MAX_IDLE_SESSIONS) {
+            sessions.remove(idle.removeFirst())?.session?.close()
+        }
+    }
+}
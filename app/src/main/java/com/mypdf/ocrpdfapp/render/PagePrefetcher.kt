@@ -0,0 +1,40 @@
+package com.mypdf.ocrpdfapp.render
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+
+/**
+ * Renders the pages around the current one into [PageBitmapCache] so flipping back and
+ * forth is served from memory. Callers run [prefetchAround] in the same coroutine that
+ * shows the current page, so a page change cancels the previous prefetch.
+ */
+class PagePrefetcher(
+    private val session: PdfRenderSession,
+    private val radius: Int = DEFAULT_RADIUS,
+    private val scaleForPage: (Int) -> Float = { PdfRenderSession.DEFAULT_SCALE }
+) {
+    private val interacting = MutableStateFlow(false)
+
+    /** Prefetching pauses while the user is touching the page and resumes afterwards. */
+    fun setInteracting(value: Boolean) {
+        interacting.value = value
+    }
+
+    suspend fun prefetchAround(pageIndex: Int) {
+        for (offset in 1..radius) {
+            // Forward first, since reading moves forward more often than back
+            for (target in intArrayOf(pageIndex + offset, pageIndex - offset)) {
+                if (target < 0 || target >= session.pageCount) continue
+                val scale = scaleForPage(target)
+                if (PageBitmapCache.contains(PageKey(session.fingerprint, target, scale))) continue
+
+                interacting.first { !it }
+                PageImageService.prefetch(session, target, scale)
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_RADIUS = 2
+    }
+}
@@ -0,0 +1,44 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.util.LruCache
+
+/**
+ * Extracted page text for the reflow viewer, keyed like rendered pages but without a scale.
+ * Text is tiny next to a bitmap, so a whole novel usually fits in the budget.
+ * An empty string marks a page with no usable text layer.
+ */
+object PageTextCache : TrimmableCache {
+    // Budget in chars; two bytes each
+    private const val MAX_CHARS = 2 * 1024 * 1024
+
+    override val cacheName = "Page text"
+
+    // Cheap to keep and slow to extract again, so it goes last
+    override val cachePriority = CachePriority.HIGH
+
+    init {
+        CacheRegistry.register(this)
+    }
+
+    private val memoryCache = object : LruCache<PageKey, String>(MAX_CHARS) {
+        override fun sizeOf(key: PageKey, value: String): Int {
+            return maxOf(value.length, 1)
+        }
+    }
+
+    fun get(fingerprint: String, pageIndex: Int): String? {
+        return memoryCache.get(PageKey(fingerprint, pageIndex, 0f))
+    }
+
+    fun put(fingerprint: String, pageIndex: Int, text: String) {
+        memoryCache.put(PageKey(fingerprint, pageIndex, 0f), text)
+    }
+
+    override fun currentBytes(): Long = memoryCache.size() * 2L
+
+    override fun maxBytes(): Long = memoryCache.maxSize() * 2L
+
+    override fun trimToFraction(fraction: Float) {
+        if (fraction <= 0f) memoryCache.evictAll() else memoryCache.trimToSize((memoryCache.maxSize() * fraction).toInt())
+    }
+}
@@ -0,0 +1,171 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.os.ParcelFileDescriptor
+import android.os.SystemClock
+import android.util.Log
+import com.itextpdf.text.io.RandomAccessSourceFactory
+import com.itextpdf.text.pdf.PdfReader
+import com.itextpdf.text.pdf.RandomAccessFileOrArray
+import com.itextpdf.text.pdf.parser.PdfTextExtractor
+import com.mypdf.ocrpdfapp.model.PdfFile
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.Closeable
+import java.io.FileInputStream
+
+/**
+ * Page text for the reflow viewer and word positions for search, extracted with the same
+ * iText [PdfTextExtractor] as the text extraction screens. The reader is opened in partial
+ * mode and each page is released after extraction, so memory stays at roughly one page's
+ * objects plus [PageTextCache] and [PageWordIndexCache].
+ */
+class PageTextSource private constructor(
+    val fingerprint: String,
+    private val fileDescriptor: ParcelFileDescriptor,
+    private val reader: PdfReader
+) : Closeable {
+    // PdfReader is not thread-safe
+    private val mutex = Mutex()
+
+    @Volatile
+    private var closed = false
+    private var released = false
+
+    val pageCount: Int = reader.numberOfPages
+
+    /**
+     * Returns the reflowed text of the page, or null when the page has no usable text layer
+     * (scans and other image-only pages), which the viewer renders instead.
+     */
+    suspend fun getText(pageIndex: Int): String? {
+        PageTextCache.get(fingerprint, pageIndex)?.let { return it.ifEmpty { null } }
+        return extract(pageIndex)?.first?.ifEmpty { null }
+    }
+
+    /** Word positions for search highlights, or null when the page could not be parsed. */
+    suspend fun getWordIndex(pageIndex: Int): PageWordIndex? {
+        PageWordIndexCache.get(fingerprint, pageIndex)?.let { return it }
+        return extract(pageIndex)?.second
+    }
+
+    /** Searches the pages in order, emitting all hits so far after each page that adds some. */
+    fun search(query: String): Flow<List<SearchHit>> = flow {
+        val hits = ArrayList<SearchHit>()
+        for (pageIndex in 0 until pageCount) {
+            val found = getWordIndex(pageIndex)?.find(query) ?: continue
+            if (found.isEmpty()) continue
+            found.mapTo(hits) { SearchHit(pageIndex, it) }
+            emit(hits.toList())
+        }
+    }
+
+    // One parse fills both caches, so reflow and search never parse a page twice
+    private suspend fun extract(pageIndex: Int): Pair<String, PageWordIndex?>? {
+        val result = withContext(Dispatchers.IO) {
+            try {
+                mutex.withLock {
+                    if (closed) return@withLock null
+                    ensureActive()
+                    val start = SystemClock.elapsedRealtime()
+                    val page = pageIndex + 1
+                    try {
+                        val words = PageWordIndex.Builder(reader.getCropBox(page), reader.getPageRotation(page))
+                        val raw = PdfTextExtractor.getTextFromPage(reader, page, words)
+                        Log.d(TAG, "Extracted page $page in ${SystemClock.elapsedRealtime() - start} ms")
+                        val text = if (raw.count { !it.isWhitespace() } < MIN_TEXT_CHARS) "" else reflow(raw)
+                        text to words.build()
+                    } catch (e: Exception) {
+                        Log.w(TAG, "Could not extract page $page", e)
+                        "" to null
+                    } finally {
+                        reader.releasePage(page)
+                    }
+                }
+            } finally {
+                // Also when cancelled: close() gave up on the lock this parse was holding
+                releaseIfClosed()
+            }
+        }
+        if (result == null) return null
+        PageTextCache.put(fingerprint, pageIndex, result.first)
+        result.second?.let { PageWordIndexCache.put(fingerprint, pageIndex, it) }
+        return result
+    }
+
+    /** Like [PdfRenderSession.close], an extraction in flight releases the reader when it ends. */
+    override fun close() {
+        closed = true
+        releaseIfClosed()
+    }
+
+    private fun releaseIfClosed() {
+        if (!closed || !mutex.tryLock()) return
+        try {
+            if (!released) {
+                released = true
+                reader.close()
+                fileDescriptor.close()
+            }
+        } catch (e: Exception) {
+            e.printStackTrace()
+        } finally {
+            mutex.unlock()
+        }
+    }
+
+    companion object {
+        private const val TAG = "PageTextSource"
+
+        // Fewer visible characters than this is treated as an image-only page
+        private const val MIN_TEXT_CHARS = 16
+
+        suspend fun open(context: Context, pdfFile: PdfFile): PageTextSource = withContext(Dispatchers.IO) {
+            val fileDescriptor = when {
+                pdfFile.uri != null -> context.contentResolver.openFileDescriptor(pdfFile.uri, "r")
+                pdfFile.file != null -> ParcelFileDescriptor.open(pdfFile.file, ParcelFileDescriptor.MODE_READ_ONLY)
+                else -> null
+            } ?: throw IllegalStateException("Could not open PDF file")
+            try {
+                val channel = FileInputStream(fileDescriptor.fileDescriptor).channel
+                val source = RandomAccessSourceFactory().createSource(channel)
+                PageTextSource(pdfFile.fingerprint, fileDescriptor, PdfReader(RandomAccessFileOrArray(source), null))
+            } catch (e: Exception) {
+                fileDescriptor.close()
+                throw e
+            }
+        }
+
+        /**
+         * Joins the extractor's layout lines back into paragraphs. A line much shorter than
+         * the page's longest line ends a paragraph; a trailing hyphen joins the word.
+         */
+        internal fun reflow(raw: String): String {
+            val lines = raw.lines().map { it.trim() }
+            val fullWidth = lines.maxOfOrNull { it.length } ?: 0
+            val builder = StringBuilder(raw.length)
+            var previous = ""
+            for (line in lines) {
+                when {
+                    line.isEmpty() -> {
+                        if (builder.isNotEmpty() && !builder.endsWith("\n\n")) builder.append("\n\n")
+                    }
+                    builder.isEmpty() || builder.endsWith("\n\n") -> builder.append(line)
+                    previous.length < fullWidth * 0.7f -> builder.append("\n\n").append(line)
+                    previous.endsWith("-") -> {
+                        builder.setLength(builder.length - 1)
+                        builder.append(line)
+                    }
+                    else -> builder.append(' ').append(line)
+                }
+                previous = line
+            }
+            return builder.toString().trim()
+        }
+    }
+}
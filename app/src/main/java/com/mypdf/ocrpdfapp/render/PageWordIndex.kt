@@ -0,0 +1,229 @@
+package com.mypdf.ocrpdfapp.render
+
+import com.itextpdf.text.Rectangle
+import com.itextpdf.text.pdf.parser.ImageRenderInfo
+import com.itextpdf.text.pdf.parser.LocationTextExtractionStrategy
+import com.itextpdf.text.pdf.parser.TextExtractionStrategy
+import com.itextpdf.text.pdf.parser.TextRenderInfo
+import com.itextpdf.text.pdf.parser.Vector
+import kotlin.math.abs
+
+/** One search match: its page and the boxes from [PageWordIndex.find]. */
+class SearchHit(val pageIndex: Int, val boxes: FloatArray)
+
+/**
+ * Where each word of a page sits, for drawing search hits over the rendered page. Words are
+ * kept in content order as one lowercased string with a single space between words, with
+ * the box of every char in flat arrays. Boxes are per char rather than per word because on
+ * rotated pages text runs right to left or top to bottom in view space.
+ *
+ * Coordinates are PDF points from the top-left of the page as PdfRenderer shows it (crop box,
+ * with /Rotate applied), so they scale to a page bitmap by the bitmap's scale.
+ */
+class PageWordIndex private constructor(
+    val pageWidth: Float,
+    val pageHeight: Float,
+    private val text: String,
+    private val charLeft: FloatArray,
+    private val charTop: FloatArray,
+    private val charRight: FloatArray,
+    private val charBottom: FloatArray,
+    private val wordStarts: IntArray
+) {
+    val wordCount: Int
+        get() = wordStarts.size
+
+    /** Rough heap cost, for cache budgets. */
+    val byteCount: Int
+        get() = text.length * 18 + wordStarts.size * 4
+
+    /**
+     * Every case-insensitive match of [query], in page order. Each hit is a flat
+     * [left, top, right, bottom, ...] array with one box per line it covers.
+     */
+    fun find(query: String): List<FloatArray> {
+        val needle = normalize(query.trim())
+        if (needle.isEmpty() || wordStarts.isEmpty()) return emptyList()
+        val hits = ArrayList<FloatArray>()
+        var from = 0
+        while (true) {
+            val start = text.indexOf(needle, from)
+            if (start < 0) break
+            hits.add(boxesFor(start, start + needle.length))
+            from = start + needle.length
+        }
+        return hits
+    }
+
+    private fun boxesFor(start: Int, end: Int): FloatArray {
+        val boxes = ArrayList<Float>(4)
+        var word = wordAt(start)
+        while (word < wordStarts.size && wordStarts[word] < end) {
+            val wordEnd = if (word + 1 < wordStarts.size) wordStarts[word + 1] - 1 else text.length
+            val first = maxOf(start, wordStarts[word])
+            val last = minOf(end, wordEnd) - 1
+            if (last >= first) {
+                var left = charLeft[first]
+                var top = charTop[first]
+                var right = charRight[first]
+                var bottom = charBottom[first]
+                for (i in first + 1..last) {
+                    left = minOf(left, charLeft[i])
+                    top = minOf(top, charTop[i])
+                    right = maxOf(right, charRight[i])
+                    bottom = maxOf(bottom, charBottom[i])
+                }
+                val merged = boxes.size >= 4 && abs(boxes[boxes.size - 3] - top) < 1f && abs(boxes[boxes.size - 1] - bottom) < 1f
+                if (merged) {
+                    // Same line as the previous word: widen its box
+                    boxes[boxes.size - 4] = minOf(boxes[boxes.size - 4], left)
+                    boxes[boxes.size - 2] = maxOf(boxes[boxes.size - 2], right)
+                } else {
+                    boxes.add(left)
+                    boxes.add(top)
+                    boxes.add(right)
+                    boxes.add(bottom)
+                }
+            }
+            word++
+        }
+        return boxes.toFloatArray()
+    }
+
+    private fun wordAt(charIndex: Int): Int {
+        val found = wordStarts.binarySearch(charIndex)
+        return if (found >= 0) found else (-found - 2).coerceAtLeast(0)
+    }
+
+    /**
+     * Extraction strategy that gives the same text as iText's default strategy and records
+     * glyph positions on the way, so one parse of the page serves both.
+     */
+    class Builder(private val cropBox: Rectangle, rotation: Int) : TextExtractionStrategy {
+        private val rotation = ((rotation % 360) + 360) % 360
+        private val textStrategy = LocationTextExtractionStrategy()
+        private val text = StringBuilder()
+        private var charLeft = FloatArray(256)
+        private var charTop = FloatArray(256)
+        private var charRight = FloatArray(256)
+        private var charBottom = FloatArray(256)
+        private var wordStarts = IntArray(64)
+        private var wordCount = 0
+        private var lastRight = 0f
+        private var lastBaseline = Float.NaN
+        private var inWord = false
+
+        override fun beginTextBlock() {
+            textStrategy.beginTextBlock()
+        }
+
+        override fun endTextBlock() {
+            textStrategy.endTextBlock()
+        }
+
+        override fun renderImage(renderInfo: ImageRenderInfo) {
+            textStrategy.renderImage(renderInfo)
+        }
+
+        override fun renderText(renderInfo: TextRenderInfo) {
+            textStrategy.renderText(renderInfo)
+            val spaceWidth = renderInfo.singleSpaceWidth
+            for (glyph in renderInfo.characterRenderInfos) {
+                val glyphText = glyph.text
+                if (glyphText.isNullOrEmpty() || glyphText.isBlank()) {
+                    inWord = false
+                    continue
+                }
+                val ascentStart = glyph.ascentLine.startPoint
+                val ascentEnd = glyph.ascentLine.endPoint
+                val descentStart = glyph.descentLine.startPoint
+                val baseline = glyph.baseline.startPoint[Vector.I2]
+                val left = descentStart[Vector.I1]
+                // Gaps wider than a third of a space, or a new line, start a new word
+                val newLine = lastBaseline.isNaN() || abs(baseline - lastBaseline) > 1f
+                if (inWord && (newLine || left - lastRight > spaceWidth / 3f)) inWord = false
+                addGlyph(glyphText, left, descentStart[Vector.I2], ascentEnd[Vector.I1], ascentStart[Vector.I2])
+                lastRight = ascentEnd[Vector.I1]
+                lastBaseline = baseline
+            }
+        }
+
+        override fun getResultantText(): String = textStrategy.resultantText
+
+        private fun addGlyph(glyphText: String, x0: Float, y0: Float, x1: Float, y1: Float) {
+            // Glyph corners in page view space
+            val (ax, ay) = toView(x0, y0)
+            val (bx, by) = toView(x1, y1)
+            val left = minOf(ax, bx)
+            val right = maxOf(ax, bx)
+            val top = minOf(ay, by)
+            val bottom = maxOf(ay, by)
+            if (!inWord) {
+                // Separators are never part of a hit's boxes
+                if (wordCount > 0) appendChar(' ', left, top, left, bottom)
+                if (wordCount == wordStarts.size) wordStarts = wordStarts.copyOf(wordCount * 2)
+                wordStarts[wordCount] = text.length
+                wordCount++
+                inWord = true
+            }
+            // Ligatures and other multi-char glyphs share the glyph's box
+            for (c in glyphText) appendChar(Character.toLowerCase(c), left, top, right, bottom)
+        }
+
+        private fun appendChar(c: Char, left: Float, top: Float, right: Float, bottom: Float) {
+            val index = text.length
+            if (index == charLeft.size) {
+                charLeft = charLeft.copyOf(index * 2)
+                charTop = charTop.copyOf(index * 2)
+                charRight = charRight.copyOf(index * 2)
+                charBottom = charBottom.copyOf(index * 2)
+            }
+            text.append(c)
+            charLeft[index] = left
+            charTop[index] = top
+            charRight[index] = right
+            charBottom[index] = bottom
+        }
+
+        private fun toView(x: Float, y: Float): Pair<Float, Float> {
+            return when (rotation) {
+                90 -> (y - cropBox.bottom) to (x - cropBox.left)
+                180 -> (cropBox.right - x) to (y - cropBox.bottom)
+                270 -> (cropBox.top - y) to (cropBox.right - x)
+                else -> (x - cropBox.left) to (cropBox.top - y)
+            }
+        }
+
+        fun build(): PageWordIndex {
+            val rotated = rotation == 90 || rotation == 270
+            return PageWordIndex(
+                if (rotated) cropBox.height else cropBox.width,
+                if (rotated) cropBox.width else cropBox.height,
+                text.toString(),
+                charLeft.copyOf(text.length),
+                charTop.copyOf(text.length),
+                charRight.copyOf(text.length),
+                charBottom.copyOf(text.length),
+                wordStarts.copyOf(wordCount)
+            )
+        }
+    }
+
+    companion object {
+        // Lowercased char by char so offsets into the indexed text stay valid
+        private fun normalize(query: String): String {
+            val builder = StringBuilder(query.length)
+            var space = false
+            for (c in query) {
+                if (c.isWhitespace()) {
+                    space = true
+                    continue
+                }
+                if (space && builder.isNotEmpty()) builder.append(' ')
+                space = false
+                builder.append(Character.toLowerCase(c))
+            }
+            return builder.toString()
+        }
+    }
+}
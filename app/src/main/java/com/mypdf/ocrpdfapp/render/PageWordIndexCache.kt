@@ -0,0 +1,41 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.util.LruCache
+
+/**
+ * Word positions for search highlights, keyed like [PageTextCache]. Filled by any text
+ * extraction that runs a [PageWordIndex.Builder], so the viewer can jump between hits
+ * without parsing pages again.
+ */
+object PageWordIndexCache : TrimmableCache {
+    private const val MAX_BYTES = 8 * 1024 * 1024
+
+    override val cacheName = "Page word positions"
+    override val cachePriority = CachePriority.NORMAL
+
+    init {
+        CacheRegistry.register(this)
+    }
+
+    private val memoryCache = object : LruCache<PageKey, PageWordIndex>(MAX_BYTES) {
+        override fun sizeOf(key: PageKey, value: PageWordIndex): Int {
+            return maxOf(value.byteCount, 1)
+        }
+    }
+
+    fun get(fingerprint: String, pageIndex: Int): PageWordIndex? {
+        return memoryCache.get(PageKey(fingerprint, pageIndex, 0f))
+    }
+
+    fun put(fingerprint: String, pageIndex: Int, index: PageWordIndex) {
+        memoryCache.put(PageKey(fingerprint, pageIndex, 0f), index)
+    }
+
+    override fun currentBytes(): Long = memoryCache.size().toLong()
+
+    override fun maxBytes(): Long = MAX_BYTES.toLong()
+
+    override fun trimToFraction(fraction: Float) {
+        if (fraction <= 0f) memoryCache.evictAll() else memoryCache.trimToSize((MAX_BYTES * fraction).toInt())
+    }
+}
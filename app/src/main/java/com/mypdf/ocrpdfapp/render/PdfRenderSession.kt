@@ -0,0 +1,284 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Color
+import android.graphics.Matrix
+import android.graphics.pdf.PdfRenderer
+import android.os.ParcelFileDescriptor
+import android.os.SystemClock
+import android.util.Log
+import com.mypdf.ocrpdfapp.model.PdfFile
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.Closeable
+
+/**
+ * Keeps one [PdfRenderer] open for the lifetime of a viewed document so page turns
+ * don't pay for opening the descriptor and parsing the xref again.
+ *
+ * PdfRenderer allows only one open page at a time, so renders are serialized with a mutex.
+ * A render whose coroutine is cancelled while waiting (e.g. the user already flipped to
+ * another page) never touches the renderer.
+ */
+class PdfRenderSession private constructor(
+    val fingerprint: String,
+    private val fileDescriptor: ParcelFileDescriptor,
+    private val renderer: PdfRenderer
+) : Closeable {
+    private val mutex = Mutex()
+
+    @Volatile
+    private var closed = false
+    private var released = false
+
+    @Volatile
+    private var geometry: PageGeometryTable? = null
+
+    val pageCount: Int = renderer.pageCount
+
+    /**
+     * Reads the page from [PageDiskCache], rendering and writing it back on a miss. The result
+     * is converted for [use] (see [RenderConfigPolicy]); use [renderPage] for a mutable bitmap.
+     */
+    suspend fun loadPage(pageIndex: Int, scale: Float = DEFAULT_SCALE, use: BitmapUse = BitmapUse.DISPLAY_PAGE): Bitmap? {
+        val key = PageKey(fingerprint, pageIndex, scale)
+        val stored = withContext(Dispatchers.IO) {
+            val start = RenderMetrics.now()
+            val decoded = PageDiskCache.get(key)
+            RenderMetrics.recordLookup("page disk", decoded != null)
+            if (decoded != null) RenderMetrics.record(RenderStage.DISK_READ, start)
+            decoded?.let { RenderConfigPolicy.finish(it, use) }
+        }
+        if (stored != null) return stored
+        val bitmap = renderPage(pageIndex, scale) ?: return null
+        // Written before conversion; hardware bitmaps can't be drawn into the disk copy
+        PageDiskCache.put(key, bitmap)
+        return withContext(Dispatchers.IO) { RenderConfigPolicy.finish(bitmap, use) }
+    }
+
+    /**
+     * [PageGeometryTable.fitScale] for one page, without measuring the whole document when
+     * neither [loadGeometry] nor [PageGeometryStore] has its sizes yet.
+     */
+    suspend fun fitScale(pageIndex: Int, viewWidth: Int, viewHeight: Int): Float = withContext(Dispatchers.IO) {
+        val table = geometry ?: PageGeometryStore.get(fingerprint)?.takeIf { it.pageCount == pageCount }
+        if (table != null) {
+            geometry = table
+            return@withContext table.fitScale(pageIndex, viewWidth, viewHeight)
+        }
+        val size = try {
+            mutex.withLock {
+                if (closed) throw IllegalStateException("Render session is closed")
+                val page = renderer.openPage(pageIndex)
+                try {
+                    page.width to page.height
+                } finally {
+                    page.close()
+                }
+            }
+        } finally {
+            releaseIfClosed()
+        }
+        PageGeometryTable.fitScale(size.first, size.second, viewWidth, viewHeight)
+    }
+
+    suspend fun renderPage(pageIndex: Int, scale: Float = DEFAULT_SCALE): Bitmap? = withContext(Dispatchers.IO) {
+        if (pageIndex < 0 || pageIndex >= pageCount) {
+            throw IllegalArgumentException("Invalid page number")
+        }
+        val waitStart = RenderMetrics.now()
+        val bitmap = try {
+            mutex.withLock {
+                if (closed) return@withLock null
+                // Drop stale requests before touching the renderer
+                ensureActive()
+                RenderMetrics.record(RenderStage.RENDERER_WAIT, waitStart)
+
+                val start = SystemClock.elapsedRealtime()
+                val openStart = RenderMetrics.now()
+                val page = renderer.openPage(pageIndex)
+                RenderMetrics.record(RenderStage.OPEN_PAGE, openStart)
+                try {
+                    val bitmap = BitmapPool.acquire(
+                        (page.width * scale).toInt(),
+                        (page.height * scale).toInt()
+                    )
+                    // PdfRenderer paints no paper; page color filters need an opaque white to tint
+                    bitmap.eraseColor(Color.WHITE)
+                    val renderStart = RenderMetrics.now()
+                    page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
+                    RenderMetrics.record(RenderStage.RENDER, renderStart)
+                    Log.d(TAG, "Rendered page ${pageIndex + 1} in ${SystemClock.elapsedRealtime() - start} ms")
+                    bitmap
+                } finally {
+                    page.close()
+                }
+            }
+        } finally {
+            releaseIfClosed()
+        }
+        if (!isActive) {
+            BitmapPool.release(bitmap)
+            throw CancellationException("Page ${pageIndex + 1} is no longer needed")
+        }
+        bitmap
+    }
+
+    /**
+     * Renders the part of a page starting at ([left], [top]) in points into a [width] x [height]
+     * bitmap at [scale] pixels per point. Used for sharp zoomed-in views without rendering
+     * the whole page at that scale. The bitmap comes from [BitmapPool] and is not cached.
+     */
+    suspend fun renderRegion(pageIndex: Int, left: Float, top: Float, scale: Float, width: Int, height: Int): Bitmap? = withContext(Dispatchers.IO) {
+        if (pageIndex < 0 || pageIndex >= pageCount) {
+            throw IllegalArgumentException("Invalid page number")
+        }
+        val waitStart = RenderMetrics.now()
+        val bitmap = try {
+            mutex.withLock {
+                if (closed) return@withLock null
+                ensureActive()
+                RenderMetrics.record(RenderStage.RENDERER_WAIT, waitStart)
+
+                val start = SystemClock.elapsedRealtime()
+                val openStart = RenderMetrics.now()
+                val page = renderer.openPage(pageIndex)
+                RenderMetrics.record(RenderStage.OPEN_PAGE, openStart)
+                try {
+                    val bitmap = BitmapPool.acquire(width, height)
+                    // Drawn over the scaled page, so blank areas must be opaque
+                    bitmap.eraseColor(Color.WHITE)
+                    val matrix = Matrix().apply {
+                        postScale(scale, scale)
+                        postTranslate(-left * scale, -top * scale)
+                    }
+                    val renderStart = RenderMetrics.now()
+                    page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
+                    RenderMetrics.record(RenderStage.RENDER, renderStart)
+                    Log.d(TAG, "Rendered ${width}x$height region of page ${pageIndex + 1} in ${SystemClock.elapsedRealtime() - start} ms")
+                    bitmap
+                } finally {
+                    page.close()
+                }
+            }
+        } finally {
+            releaseIfClosed()
+        }
+        if (!isActive) {
+            BitmapPool.release(bitmap)
+            throw CancellationException("Region of page ${pageIndex + 1} is no longer needed")
+        }
+        bitmap
+    }
+
+    /**
+     * Reads every page size once, or takes it from [PageGeometryStore] when this version of
+     * the document was measured before. The lock is taken per page so visible renders can
+     * interleave with the pass on long documents.
+     */
+    suspend fun loadGeometry(): PageGeometryTable {
+        geometry?.let { return it }
+        return withContext(Dispatchers.IO) {
+            PageGeometryStore.get(fingerprint)?.let { stored ->
+                if (stored.pageCount == pageCount) {
+                    geometry = stored
+                    return@withContext stored
+                }
+            }
+            val widths = IntArray(pageCount)
+            val heights = IntArray(pageCount)
+            try {
+                for (i in 0 until pageCount) {
+                    mutex.withLock {
+                        if (closed) throw IllegalStateException("Render session is closed")
+                        ensureActive()
+                        val page = renderer.openPage(i)
+                        try {
+                            widths[i] = page.width
+                            heights[i] = page.height
+                        } finally {
+                            page.close()
+                        }
+                    }
+                }
+            } finally {
+                releaseIfClosed()
+            }
+            val duplicate = try {
+                mutex.withLock {
+                    if (closed) throw IllegalStateException("Render session is closed")
+                    fileDescriptor.dup()
+                }
+            } finally {
+                releaseIfClosed()
+            }
+            val rotations = PageGeometryStore.readRotations(duplicate, pageCount)
+            PageGeometryTable(widths, heights, rotations).also {
+                geometry = it
+                PageGeometryStore.put(fingerprint, it)
+            }
+        }
+    }
+
+    /**
+     * Marks the session closed. If a render is in flight the renderer is released as soon
+     * as that render finishes, so this never blocks the caller.
+     */
+    override fun close() {
+        closed = true
+        releaseIfClosed()
+    }
+
+    private fun releaseIfClosed() {
+        if (!closed || !mutex.tryLock()) return
+        try {
+            if (!released) {
+                released = true
+                renderer.close()
+                fileDescriptor.close()
+            }
+        } catch (e: Exception) {
+            e.printStackTrace()
+        } finally {
+            mutex.unlock()
+        }
+    }
+
+    companion object {
+        private const val TAG = "PdfRenderSession"
+        const val DEFAULT_SCALE = 2f
+
+        suspend fun open(
+            context: Context,
+            pdfFile: PdfFile,
+            fingerprint: String = pdfFile.fingerprint
+        ): PdfRenderSession = withContext(Dispatchers.IO) {
+            val start = SystemClock.elapsedRealtime()
+            val fdStart = RenderMetrics.now()
+            // Get file descriptor based on whether we have a URI or file
+            val fileDescriptor = when {
+                pdfFile.uri != null -> context.contentResolver.openFileDescriptor(pdfFile.uri, "r")
+                pdfFile.file != null -> ParcelFileDescriptor.open(pdfFile.file, ParcelFileDescriptor.MODE_READ_ONLY)
+                else -> null
+            } ?: throw IllegalStateException("Could not open PDF file")
+            RenderMetrics.record(RenderStage.FD_OPEN, fdStart)
+
+            val rendererStart = RenderMetrics.now()
+            val renderer = try {
+                PdfRenderer(fileDescriptor)
+            } catch (e: Exception) {
+                fileDescriptor.close()
+                throw e
+            }
+            RenderMetrics.record(RenderStage.RENDERER_INIT, rendererStart)
+            Log.d(TAG, "Opened ${pdfFile.name} (${renderer.pageCount} pages) in ${SystemClock.elapsedRealtime() - start} ms")
+            PdfRenderSession(fingerprint, fileDescriptor, renderer)
+        }
+    }
+}
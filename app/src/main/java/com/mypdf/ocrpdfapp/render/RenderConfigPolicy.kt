@@ -0,0 +1,99 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.app.ActivityManager
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.os.Build
+import android.os.Looper
+import android.util.Log
+
+/** What a rendered bitmap is used for, which decides the config it is kept in. */
+enum class BitmapUse {
+    /** Small list and grid images. */
+    THUMBNAIL,
+
+    /** Coarse first passes and small previews that are replaced or shown briefly. */
+    PREVIEW,
+
+    /** Full pages that are only drawn, never drawn into or read back. */
+    DISPLAY_PAGE,
+
+    /** Bitmaps that are drawn into later or recycled through [BitmapPool]. */
+    MUTABLE
+}
+
+/**
+ * Picks the bitmap config for each [BitmapUse]. PdfRenderer only renders into ARGB_8888, so
+ * pages are rendered as ARGB and [finish] converts them afterwards:
+ * - thumbnails and previews become RGB_565 on a white background (half the bytes),
+ * - display-only pages become HARDWARE bitmaps on API 26+, which keeps the pixels in
+ *   graphics memory only, or RGB_565 on older low-RAM devices.
+ * Anything that fails to convert stays ARGB_8888.
+ */
+object RenderConfigPolicy {
+    private const val TAG = "RenderConfigPolicy"
+    private const val LOW_MEMORY_CLASS_MB = 128
+
+    @Volatile
+    private var lowMemoryMode = false
+
+    @JvmStatic
+    fun init(context: Context) {
+        val activityManager = context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
+        lowMemoryMode = activityManager.isLowRamDevice || activityManager.memoryClass <= LOW_MEMORY_CLASS_MB
+    }
+
+    /** Low-RAM devices and small heaps, where screens should keep fewer pages around. */
+    @JvmStatic
+    fun isLowMemoryMode(): Boolean = lowMemoryMode
+
+    @JvmStatic
+    fun configFor(use: BitmapUse): Bitmap.Config {
+        return when (use) {
+            BitmapUse.THUMBNAIL, BitmapUse.PREVIEW -> Bitmap.Config.RGB_565
+            BitmapUse.DISPLAY_PAGE -> when {
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O -> Bitmap.Config.HARDWARE
+                lowMemoryMode -> Bitmap.Config.RGB_565
+                else -> Bitmap.Config.ARGB_8888
+            }
+            BitmapUse.MUTABLE -> Bitmap.Config.ARGB_8888
+        }
+    }
+
+    /**
+     * Converts a freshly rendered ARGB bitmap to the config for [use]. The source goes back to
+     * [BitmapPool] when a converted copy is returned. Must run off the main thread; on the main
+     * thread the bitmap is returned unchanged.
+     */
+    @JvmStatic
+    fun finish(rendered: Bitmap, use: BitmapUse): Bitmap {
+        val target = configFor(use)
+        if (rendered.config == target || rendered.isRecycled) return rendered
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Log.w(TAG, "Skipping $use conversion on the main thread")
+            return rendered
+        }
+        val start = RenderMetrics.now()
+        val converted = try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && target == Bitmap.Config.HARDWARE) {
+                rendered.copy(Bitmap.Config.HARDWARE, false)
+            } else {
+                // RGB_565 has no alpha, so the transparent page background must become white
+                BitmapPool.acquire(rendered.width, rendered.height, target).also {
+                    val canvas = Canvas(it)
+                    canvas.drawColor(Color.WHITE)
+                    canvas.drawBitmap(rendered, 0f, 0f, null)
+                }
+            }
+        } catch (e: OutOfMemoryError) {
+            null
+        } catch (e: IllegalArgumentException) {
+            null
+        } ?: return rendered
+        RenderMetrics.record(RenderStage.UPLOAD, start)
+        BitmapPool.release(rendered)
+        return converted
+    }
+}
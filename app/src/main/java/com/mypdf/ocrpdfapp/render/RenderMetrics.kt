@@ -0,0 +1,195 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.os.Build
+import android.os.SystemClock
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import java.io.File
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import kotlin.math.ceil
+
+/** Steps of getting a page on screen, in pipeline order. */
+enum class RenderStage {
+    FD_OPEN,
+    RENDERER_INIT,
+    QUEUE_WAIT,
+    RENDERER_WAIT,
+    DISK_READ,
+    THUMB_PROBE,
+    OPEN_PAGE,
+    RENDER,
+    UPLOAD,
+    PAGE_TOTAL,
+
+    /** Viewer opened until its first page is on screen, including the document open. */
+    FIRST_PAGE,
+
+    /** Page number changed until that page is on screen. */
+    PAGE_FLIP
+}
+
+data class StageStats(
+    val stage: RenderStage,
+    val count: Long,
+    val p50Ms: Double,
+    val p95Ms: Double,
+    val p99Ms: Double
+)
+
+data class LookupStats(
+    val name: String,
+    val hits: Long,
+    val misses: Long
+) {
+    val hitRatio: Double
+        get() = if (hits + misses > 0) hits.toDouble() / (hits + misses) else 0.0
+}
+
+/**
+ * Process-wide timings for the render pipeline. Each stage keeps the last [WINDOW] samples
+ * so the percentiles follow what the user is doing now rather than the whole session.
+ * Also counts cache lookups, cache evictions and newly allocated bitmap bytes.
+ *
+ * Recording is a few array writes under a lock, cheap enough to leave on in release builds.
+ */
+object RenderMetrics {
+    private const val WINDOW = 256
+
+    private val samples = Array(RenderStage.values().size) { LongArray(WINDOW) }
+    private val sampleCounts = LongArray(RenderStage.values().size)
+    private val lookups = LinkedHashMap<String, LongArray>()
+    private val evictions = LinkedHashMap<String, Long>()
+    private var allocatedBytes = 0L
+    private var allocations = 0L
+
+    private val _overlayEnabled = MutableStateFlow(false)
+
+    /** Whether the viewer shows the live metrics overlay; toggled from the debug screen. */
+    val overlayEnabled: StateFlow<Boolean> = _overlayEnabled
+
+    fun setOverlayEnabled(enabled: Boolean) {
+        _overlayEnabled.value = enabled
+    }
+
+    /** Start time for [record]. */
+    @JvmStatic
+    fun now(): Long = SystemClock.elapsedRealtimeNanos()
+
+    @JvmStatic
+    fun record(stage: RenderStage, startNanos: Long) {
+        recordDuration(stage, SystemClock.elapsedRealtimeNanos() - startNanos)
+    }
+
+    @JvmStatic
+    fun recordDuration(stage: RenderStage, durationNanos: Long) {
+        synchronized(this) {
+            val index = stage.ordinal
+            samples[index][(sampleCounts[index] % WINDOW).toInt()] = durationNanos
+            sampleCounts[index]++
+        }
+    }
+
+    @JvmStatic
+    fun recordLookup(name: String, hit: Boolean) {
+        synchronized(this) {
+            val counts = lookups.getOrPut(name) { LongArray(2) }
+            counts[if (hit) 0 else 1]++
+        }
+    }
+
+    @JvmStatic
+    fun recordEviction(name: String) {
+        synchronized(this) {
+            evictions[name] = (evictions[name] ?: 0L) + 1
+        }
+    }
+
+    @JvmStatic
+    fun recordAllocation(bytes: Long) {
+        synchronized(this) {
+            allocatedBytes += bytes
+            allocations++
+        }
+    }
+
+    fun stageStats(): List<StageStats> {
+        synchronized(this) {
+            return RenderStage.values().filter { sampleCounts[it.ordinal] > 0 }.map { stage ->
+                val count = sampleCounts[stage.ordinal]
+                val window = samples[stage.ordinal].copyOf(minOf(count, WINDOW.toLong()).toInt())
+                window.sort()
+                StageStats(stage, count, percentile(window, 0.50), percentile(window, 0.95), percentile(window, 0.99))
+            }
+        }
+    }
+
+    fun lookupStats(): List<LookupStats> {
+        synchronized(this) {
+            return lookups.map { (name, counts) -> LookupStats(name, counts[0], counts[1]) }
+        }
+    }
+
+    fun evictionCounts(): Map<String, Long> = synchronized(this) { LinkedHashMap(evictions) }
+
+    fun allocatedBytes(): Long = synchronized(this) { allocatedBytes }
+
+    fun report(): String {
+        val builder = StringBuilder()
+        builder.append("stage            count      p50      p95      p99 (ms)\n")
+        for (stats in stageStats()) {
+            builder.append(
+                String.format(
+                    Locale.US, "%-14s %7d %8.1f %8.1f %8.1f\n",
+                    stats.stage.name, stats.count, stats.p50Ms, stats.p95Ms, stats.p99Ms
+                )
+            )
+        }
+        builder.append('\n')
+        for (stats in lookupStats()) {
+            builder.append(
+                String.format(
+                    Locale.US, "%-14s hits=%d misses=%d ratio=%.0f%%\n",
+                    stats.name, stats.hits, stats.misses, stats.hitRatio * 100
+                )
+            )
+        }
+        for ((name, count) in evictionCounts()) {
+            builder.append(String.format(Locale.US, "%-14s evictions=%d\n", name, count))
+        }
+        synchronized(this) {
+            builder.append("allocated ${allocatedBytes / 1024} KB in $allocations bitmaps\n")
+        }
+        return builder.toString()
+    }
+
+    /**
+     * Writes the current report to the app's external files dir (`metrics/`), where it can
+     * be pulled without root. Returns the file written.
+     */
+    fun dumpTo(context: Context): File {
+        val dir = File(context.getExternalFilesDir(null) ?: context.filesDir, "metrics").apply { mkdirs() }
+        val timestamp = SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(Date())
+        val file = File(dir, "render_$timestamp.txt")
+        file.writeText("${Build.MANUFACTURER} ${Build.MODEL}, API ${Build.VERSION.SDK_INT}\n\n" + report())
+        return file
+    }
+
+    fun reset() {
+        synchronized(this) {
+            sampleCounts.fill(0)
+            lookups.clear()
+            evictions.clear()
+            allocatedBytes = 0
+            allocations = 0
+        }
+    }
+
+    private fun percentile(sorted: LongArray, fraction: Double): Double {
+        if (sorted.isEmpty()) return 0.0
+        val index = (ceil(fraction * sorted.size).toInt() - 1).coerceIn(0, sorted.size - 1)
+        return sorted[index] / 1_000_000.0
+    }
+}
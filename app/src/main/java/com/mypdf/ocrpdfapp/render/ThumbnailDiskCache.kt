@@ -0,0 +1,202 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.os.Build
+import android.util.Log
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.Executors
+
+/**
+ * First-page thumbnails kept in `cacheDir/thumbnails` as small WebP files, so after a
+ * restart the library shows them without opening a single document. Entries are keyed by
+ * fingerprint (path, size and modification time) and width, and kept apart from
+ * [PageDiskCache] so full pages from the viewer never push them out.
+ *
+ * The render scale is part of the file name, so a decoded thumbnail can go into
+ * [PageBitmapCache] under the same key a fresh render would have used. The directory is
+ * listed once; after that lookups don't touch the file system unless there is an entry.
+ */
+object ThumbnailDiskCache {
+    private const val TAG = "ThumbnailDiskCache"
+    private const val DIR_NAME = "thumbnails"
+    private const val MAX_BYTES = 16L * 1024 * 1024
+    private const val QUALITY = 80
+
+    private val writer = Executors.newSingleThreadExecutor { Thread(it, "thumbnail-disk-cache") }
+
+    private var directory: File? = null
+
+    // "<fingerprint hash>_<width>" to its file, built on first use
+    private var entries: HashMap<String, File>? = null
+    private var totalBytes = 0L
+
+    // Names queued for writing but not yet in entries
+    private val pending = HashSet<String>()
+
+    @JvmStatic
+    fun init(context: Context) {
+        directory = File(context.cacheDir, DIR_NAME).apply { mkdirs() }
+    }
+
+    /**
+     * The thumbnail and the scale it was rendered at, decoded as RGB_565 like fresh
+     * thumbnails, or null on a miss. Must run off the main thread.
+     */
+    @JvmStatic
+    fun get(fingerprint: String, width: Int): Pair<Float, Bitmap>? {
+        val name = entryName(fingerprint, width)
+        val file = synchronized(this) { loadedEntries()?.get(name) } ?: return null
+        val scale = scaleOf(file) ?: return null
+        return try {
+            val options = BitmapFactory.Options().apply { inPreferredConfig = Bitmap.Config.RGB_565 }
+            val bitmap = BitmapFactory.decodeFile(file.path, options)
+            if (bitmap == null) {
+                remove(name, file)
+                return null
+            }
+            file.setLastModified(System.currentTimeMillis())
+            scale to bitmap
+        } catch (e: Exception) {
+            Log.w(TAG, "Dropping unreadable thumbnail ${file.name}", e)
+            remove(name, file)
+            null
+        }
+    }
+
+    /**
+     * Queues [bitmap] for writing; it is copied first, so the caller keeps using it. Must run
+     * off the main thread, as the first call lists the directory.
+     */
+    @JvmStatic
+    fun put(fingerprint: String, width: Int, scale: Float, bitmap: Bitmap) {
+        val name = entryName(fingerprint, width)
+        val dir = directory ?: return
+        // Claimed until written, so a second put for the same thumbnail doesn't write it again
+        val claimed = synchronized(this) {
+            val loaded = loadedEntries() ?: return
+            !loaded.containsKey(name) && pending.add(name)
+        }
+        if (!claimed) return
+        val copy = try {
+            // Software canvases can't read hardware bitmaps
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.config == Bitmap.Config.HARDWARE) {
+                bitmap.copy(Bitmap.Config.ARGB_8888, false)
+            } else {
+                BitmapPool.acquire(bitmap.width, bitmap.height).also {
+                    Canvas(it).drawBitmap(bitmap, 0f, 0f, null)
+                }
+            }
+        } catch (e: OutOfMemoryError) {
+            null
+        }
+        if (copy == null) {
+            synchronized(this) { pending.remove(name) }
+            return
+        }
+        writer.execute {
+            try {
+                write(name, File(dir, "${name}_${Math.round(scale * 100)}.webp"), copy)
+            } finally {
+                synchronized(this) { pending.remove(name) }
+                BitmapPool.release(copy)
+            }
+        }
+    }
+
+    @JvmStatic
+    fun clear() {
+        writer.execute {
+            synchronized(this) {
+                directory?.listFiles()?.forEach { it.delete() }
+                entries?.clear()
+                totalBytes = 0
+            }
+        }
+    }
+
+    private fun write(name: String, file: File, bitmap: Bitmap) {
+        val temp = File(file.parentFile, file.name + ".tmp")
+        try {
+            FileOutputStream(temp).use { bitmap.compress(webpFormat(), QUALITY, it) }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+                return
+            }
+            synchronized(this) {
+                // A file at another scale would otherwise be orphaned, as trim() only sees entries
+                loadedEntries()?.put(name, file)?.takeIf { it != file }?.let { previous ->
+                    totalBytes -= previous.length()
+                    previous.delete()
+                }
+                totalBytes += file.length()
+                if (totalBytes > MAX_BYTES) trim()
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Could not write ${file.name}", e)
+            temp.delete()
+        }
+    }
+
+    // Oldest access first; get() touches the modification time on every hit
+    private fun trim() {
+        val files = entries?.entries?.sortedBy { it.value.lastModified() } ?: return
+        var bytes = totalBytes
+        for ((name, file) in files) {
+            if (bytes <= MAX_BYTES * 3 / 4) break
+            val length = file.length()
+            if (file.delete()) {
+                entries?.remove(name)
+                bytes -= length
+            }
+        }
+        totalBytes = bytes
+    }
+
+    private fun remove(name: String, file: File) {
+        synchronized(this) {
+            if (entries?.get(name) == file) {
+                entries?.remove(name)
+                totalBytes -= file.length()
+            }
+        }
+        file.delete()
+    }
+
+    private fun loadedEntries(): HashMap<String, File>? {
+        entries?.let { return it }
+        val dir = directory ?: return null
+        val loaded = HashMap<String, File>()
+        var bytes = 0L
+        dir.listFiles()?.forEach { file ->
+            if (!file.name.endsWith(".webp") || scaleOf(file) == null) {
+                // Leftover temp files and entries from an older naming scheme
+                file.delete()
+                return@forEach
+            }
+            loaded[file.name.substringBeforeLast('_')] = file
+            bytes += file.length()
+        }
+        entries = loaded
+        totalBytes = bytes
+        return loaded
+    }
+
+    private fun entryName(fingerprint: String, width: Int) = "${hashFingerprint(fingerprint)}_$width"
+
+    private fun scaleOf(file: File): Float? {
+        return file.name.removeSuffix(".webp").substringAfterLast('_').toIntOrNull()?.let { it / 100f }
+    }
+
+    @Suppress("DEPRECATION")
+    private fun webpFormat(): Bitmap.CompressFormat {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bitmap.CompressFormat.WEBP_LOSSY
+        } else {
+            Bitmap.CompressFormat.WEBP
+        }
+    }
+}
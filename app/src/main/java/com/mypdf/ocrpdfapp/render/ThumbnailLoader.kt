@@ -0,0 +1,202 @@
+package com.mypdf.ocrpdfapp.render
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.util.Log
+import android.util.LruCache
+import com.mypdf.ocrpdfapp.model.PdfFile
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+
+/**
+ * First-page thumbnails for the library, loaded by a few workers. Requests for the same
+ * document and width share one load. Visible items go before prefetches, and newer requests
+ * before older ones, since during a fling the newest requests are for the items on screen.
+ * A load nobody waits for anymore is dropped, whether it is still queued or rendering.
+ *
+ * Thumbnails come from [ThumbnailDiskCache] when possible, then from the page's embedded
+ * image ([EmbeddedThumbnail]), and only then from a [PageImageService] session that is
+ * released as soon as the page is rendered.
+ */
+object ThumbnailLoader {
+    private const val TAG = "ThumbnailLoader"
+
+    // Each worker can hold an open document and a full-size render; more mostly add memory
+    private const val WORKERS = 3
+
+    enum class Priority { PREFETCH, VISIBLE }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val requests = HashMap<String, Request>()
+    private val queue = ArrayList<Request>()
+    private val order = compareBy<Request>({ it.priority }, { it.sequence })
+    private var running = 0
+    private var sequence = 0L
+
+    // Where each thumbnail went in PageBitmapCache, so repeat loads skip the queue
+    private val resolved = LruCache<String, PageKey>(512)
+
+    private class Request {
+        lateinit var result: Deferred<PageKey?>
+        var priority = Priority.PREFETCH
+        var sequence = 0L
+        var waiters = 0
+        var turn: CancellableContinuation<Unit>? = null
+    }
+
+    /** Pinned thumbnail [width] px wide, or null for empty and unreadable documents; see [PageImageService.release]. */
+    suspend fun load(context: Context, pdf: PdfFile, width: Int, priority: Priority = Priority.VISIBLE): Bitmap? {
+        val name = "${pdf.fingerprint}:$width"
+        resolved.get(name)?.let { key -> PageBitmapCache.getPinned(key)?.let { return it } }
+        // A second pass covers the thumbnail being evicted between loading and pinning
+        repeat(2) {
+            val key = await(context.applicationContext, pdf, width, name, priority) ?: return null
+            PageBitmapCache.getPinned(key)?.let { return it }
+        }
+        return null
+    }
+
+    /**
+     * Loads thumbnails for items about to scroll into view, unpinned and behind every visible
+     * request. Cancelling the caller drops the ones that haven't finished.
+     */
+    suspend fun prefetch(context: Context, pdfs: List<PdfFile>, width: Int) {
+        val appContext = context.applicationContext
+        coroutineScope {
+            for (pdf in pdfs) {
+                val name = "${pdf.fingerprint}:$width"
+                if (resolved.get(name)?.let { PageBitmapCache.contains(it) } == true) continue
+                launch { await(appContext, pdf, width, name, Priority.PREFETCH) }
+            }
+        }
+    }
+
+    private suspend fun await(context: Context, pdf: PdfFile, width: Int, name: String, priority: Priority): PageKey? {
+        val request = synchronized(requests) {
+            requests.getOrPut(name) {
+                Request().also { request ->
+                    request.result = scope.async(start = CoroutineStart.LAZY) {
+                        awaitWorker(request)
+                        try {
+                            produce(context, pdf, width, name)
+                        } finally {
+                            releaseWorker()
+                        }
+                    }
+                }
+            }.also {
+                it.waiters++
+                if (priority > it.priority) it.priority = priority
+                it.sequence = ++sequence
+            }
+        }
+        try {
+            return request.result.await()
+        } finally {
+            synchronized(requests) {
+                request.waiters--
+                if (request.waiters == 0) {
+                    if (requests[name] === request) requests.remove(name)
+                    request.result.cancel()
+                }
+            }
+        }
+    }
+
+    private suspend fun awaitWorker(request: Request) {
+        suspendCancellableCoroutine<Unit> { turn ->
+            val queued = synchronized(requests) {
+                if (running < WORKERS) {
+                    running++
+                    false
+                } else {
+                    request.turn = turn
+                    queue.add(request)
+                    true
+                }
+            }
+            if (!queued) {
+                turn.resume(Unit) { releaseWorker() }
+                return@suspendCancellableCoroutine
+            }
+            // Still queued: leave without taking a worker. Already handed one: resume() gives it back.
+            turn.invokeOnCancellation {
+                synchronized(requests) { queue.remove(request) }
+            }
+        }
+    }
+
+    private fun releaseWorker() {
+        val next = synchronized(requests) {
+            val best = queue.maxWithOrNull(order)
+            if (best == null) {
+                running--
+                return
+            }
+            queue.remove(best)
+            best.turn
+        } ?: return
+        next.resume(Unit) { releaseWorker() }
+    }
+
+    private suspend fun produce(context: Context, pdf: PdfFile, width: Int, name: String): PageKey? {
+        val fingerprint = pdf.fingerprint
+        val start = RenderMetrics.now()
+        val stored = ThumbnailDiskCache.get(fingerprint, width)
+        RenderMetrics.recordLookup("thumbnail disk", stored != null)
+        if (stored != null) {
+            RenderMetrics.record(RenderStage.DISK_READ, start)
+            return cache(name, fingerprint, stored.first, stored.second)
+        }
+
+        // Many scanned and Acrobat files carry a page thumbnail that is cheaper than a render
+        val probeStart = RenderMetrics.now()
+        val embedded = EmbeddedThumbnail.load(context, pdf, width)
+        RenderMetrics.record(RenderStage.THUMB_PROBE, probeStart)
+        RenderMetrics.recordLookup("thumbnail embedded", embedded != null)
+        if (embedded != null) {
+            val (scale, bitmap) = embedded
+            ThumbnailDiskCache.put(fingerprint, width, scale, bitmap)
+            return cache(name, fingerprint, scale, bitmap)
+        }
+
+        return try {
+            val session = PageImageService.openSession(context, pdf)
+            try {
+                if (session.pageCount == 0) return null
+                val scale = session.fitScale(0, width, Int.MAX_VALUE)
+                val bitmap = PageImageService.getPage(session, 0, scale, BitmapUse.THUMBNAIL) ?: return null
+                try {
+                    ThumbnailDiskCache.put(fingerprint, width, scale, bitmap)
+                } finally {
+                    PageImageService.release(bitmap)
+                }
+                PageKey(fingerprint, 0, scale, BitmapUse.THUMBNAIL).also { resolved.put(name, it) }
+            } finally {
+                PageImageService.releaseSession(session)
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.w(TAG, "No thumbnail for ${pdf.name}", e)
+            null
+        }
+    }
+
+    // Cached under the key a thumbnail render would get
+    private fun cache(name: String, fingerprint: String, scale: Float, bitmap: Bitmap): PageKey {
+        val key = PageKey(fingerprint, 0, scale, BitmapUse.THUMBNAIL)
+        if (PageBitmapCache.contains(key)) BitmapPool.release(bitmap) else PageBitmapCache.put(key, bitmap)
+        resolved.put(name, key)
+        return key
+    }
+}
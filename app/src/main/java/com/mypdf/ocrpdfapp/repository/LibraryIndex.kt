@@ -0,0 +1,252 @@
+package com.mypdf.ocrpdfapp.repository
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.Cursor
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import com.mypdf.ocrpdfapp.model.PdfFile
+import java.io.File
+
+/**
+ * The PDF library as last seen, kept in `library.db` so a refresh only looks at what
+ * changed. Each file comes either from MediaStore, with its row id, or from a folder scan.
+ * Scanned folders keep their modification time, so unchanged ones are not listed again.
+ *
+ * MediaStore rows whose file can't be read are kept as hidden. Row counts then still match
+ * MediaStore, which is how deletions are noticed (see [PdfRepository]).
+ */
+internal class LibraryIndex(context: Context) :
+    SQLiteOpenHelper(context.applicationContext, DB_NAME, null, DB_VERSION) {
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(
+            "CREATE TABLE $FILES (" +
+                "$PATH TEXT PRIMARY KEY, " +
+                "$NAME TEXT NOT NULL, " +
+                "$SIZE INTEGER NOT NULL, " +
+                "$LAST_MODIFIED INTEGER NOT NULL, " +
+                "$MEDIA_ID INTEGER, " +
+                "$FOLDER TEXT, " +
+                "$HIDDEN INTEGER NOT NULL DEFAULT 0)"
+        )
+        db.execSQL("CREATE INDEX files_media_id ON $FILES ($MEDIA_ID)")
+        db.execSQL("CREATE INDEX files_folder ON $FILES ($FOLDER)")
+        db.execSQL("CREATE TABLE $FOLDERS ($PATH TEXT PRIMARY KEY, $PARENT TEXT, $LAST_MODIFIED INTEGER NOT NULL)")
+        db.execSQL("CREATE INDEX folders_parent ON $FOLDERS ($PARENT)")
+        db.execSQL("CREATE TABLE $STATE ($KEY TEXT PRIMARY KEY, $VALUE TEXT NOT NULL)")
+    }
+
+    // Everything here can be rebuilt from MediaStore and the file system
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        db.execSQL("DROP TABLE IF EXISTS $FILES")
+        db.execSQL("DROP TABLE IF EXISTS $FOLDERS")
+        db.execSQL("DROP TABLE IF EXISTS $STATE")
+        onCreate(db)
+    }
+
+    fun allFiles(): List<PdfFile> {
+        val files = ArrayList<PdfFile>()
+        readableDatabase.query(FILES, FILE_COLUMNS, "$HIDDEN = 0", null, null, null, null).use { cursor ->
+            while (cursor.moveToNext()) files.add(fileAt(cursor))
+        }
+        return files
+    }
+
+    fun getState(key: String): String? {
+        readableDatabase.query(STATE, arrayOf(VALUE), "$KEY = ?", arrayOf(key), null, null, null).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getString(0) else null
+        }
+    }
+
+    fun putState(key: String, value: String) {
+        writableDatabase.insertWithOnConflict(
+            STATE, null,
+            ContentValues().apply {
+                put(KEY, key)
+                put(VALUE, value)
+            },
+            SQLiteDatabase.CONFLICT_REPLACE
+        )
+    }
+
+    fun <T> inTransaction(block: () -> T): T {
+        val db = writableDatabase
+        db.beginTransaction()
+        try {
+            return block().also { db.setTransactionSuccessful() }
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    // MediaStore rows
+
+    fun mediaCount(): Long = DatabaseUtils.queryNumEntries(readableDatabase, FILES, "$MEDIA_ID IS NOT NULL")
+
+    fun mediaIds(): Map<Long, String> {
+        val ids = HashMap<Long, String>()
+        readableDatabase.query(FILES, arrayOf(MEDIA_ID, PATH), "$MEDIA_ID IS NOT NULL", null, null, null, null).use { cursor ->
+            while (cursor.moveToNext()) ids[cursor.getLong(0)] = cursor.getString(1)
+        }
+        return ids
+    }
+
+    /** Path the row with [mediaId] had before, if any. */
+    fun pathForMediaId(mediaId: Long): String? {
+        readableDatabase.query(FILES, arrayOf(PATH), "$MEDIA_ID = ?", arrayOf(mediaId.toString()), null, null, null).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getString(0) else null
+        }
+    }
+
+    fun putMediaFile(file: PdfFile, mediaId: Long, hidden: Boolean) {
+        writableDatabase.delete(FILES, "$MEDIA_ID = ? AND $PATH != ?", arrayOf(mediaId.toString(), file.path))
+        writableDatabase.insertWithOnConflict(
+            FILES, null,
+            valuesFor(file).apply {
+                put(MEDIA_ID, mediaId)
+                put(HIDDEN, if (hidden) 1 else 0)
+            },
+            SQLiteDatabase.CONFLICT_REPLACE
+        )
+    }
+
+    /** MediaStore rows kept hidden because their file couldn't be read, by media id. */
+    fun hiddenMediaFiles(): Map<Long, PdfFile> {
+        val files = HashMap<Long, PdfFile>()
+        readableDatabase.query(FILES, FILE_COLUMNS + MEDIA_ID, "$HIDDEN != 0", null, null, null, null).use { cursor ->
+            while (cursor.moveToNext()) files[cursor.getLong(FILE_COLUMNS.size)] = fileAt(cursor)
+        }
+        return files
+    }
+
+    fun deleteMediaFile(mediaId: Long) {
+        writableDatabase.delete(FILES, "$MEDIA_ID = ?", arrayOf(mediaId.toString()))
+    }
+
+    /** Drops every MediaStore row, returning the paths that were shown. */
+    fun deleteAllMediaFiles(): List<String> {
+        val paths = ArrayList<String>()
+        readableDatabase.query(FILES, arrayOf(PATH), "$MEDIA_ID IS NOT NULL AND $HIDDEN = 0", null, null, null, null).use { cursor ->
+            while (cursor.moveToNext()) paths.add(cursor.getString(0))
+        }
+        writableDatabase.delete(FILES, "$MEDIA_ID IS NOT NULL", null)
+        return paths
+    }
+
+    // Scanned folders
+
+    fun folderModified(path: String): Long? {
+        readableDatabase.query(FOLDERS, arrayOf(LAST_MODIFIED), "$PATH = ?", arrayOf(path), null, null, null).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getLong(0) else null
+        }
+    }
+
+    fun childFolders(path: String): List<String> {
+        val children = ArrayList<String>()
+        readableDatabase.query(FOLDERS, arrayOf(PATH), "$PARENT = ?", arrayOf(path), null, null, null).use { cursor ->
+            while (cursor.moveToNext()) children.add(cursor.getString(0))
+        }
+        return children
+    }
+
+    fun putFolder(path: String, parent: String?, lastModified: Long) {
+        writableDatabase.insertWithOnConflict(
+            FOLDERS, null,
+            ContentValues().apply {
+                put(PATH, path)
+                put(PARENT, parent)
+                put(LAST_MODIFIED, lastModified)
+            },
+            SQLiteDatabase.CONFLICT_REPLACE
+        )
+    }
+
+    /** Drops a folder, its subfolders and their scanned files, returning the file paths. */
+    fun deleteFolder(path: String): List<String> {
+        // Everything under "path/" sorts between it and "path0". Unlike LIKE this is case-sensitive
+        // and has no wildcards, so '_' or '%' in a name can't match a sibling folder.
+        val lower = path + File.separatorChar
+        val upper = path + (File.separatorChar + 1)
+        val paths = ArrayList<String>()
+        readableDatabase.query(
+            FILES, arrayOf(PATH), "$MEDIA_ID IS NULL AND ($FOLDER = ? OR ($FOLDER >= ? AND $FOLDER < ?))",
+            arrayOf(path, lower, upper), null, null, null
+        ).use { cursor ->
+            while (cursor.moveToNext()) paths.add(cursor.getString(0))
+        }
+        writableDatabase.delete(
+            FILES, "$MEDIA_ID IS NULL AND ($FOLDER = ? OR ($FOLDER >= ? AND $FOLDER < ?))",
+            arrayOf(path, lower, upper)
+        )
+        writableDatabase.delete(FOLDERS, "$PATH = ? OR ($PATH >= ? AND $PATH < ?)", arrayOf(path, lower, upper))
+        return paths
+    }
+
+    /** Files found directly in [folder] by an earlier scan. */
+    fun scannedFiles(folder: String): Map<String, PdfFile> {
+        val files = HashMap<String, PdfFile>()
+        readableDatabase.query(FILES, FILE_COLUMNS, "$MEDIA_ID IS NULL AND $FOLDER = ?", arrayOf(folder), null, null, null).use { cursor ->
+            while (cursor.moveToNext()) fileAt(cursor).let { files[it.path] = it }
+        }
+        return files
+    }
+
+    fun isMediaFile(path: String): Boolean {
+        return DatabaseUtils.queryNumEntries(readableDatabase, FILES, "$PATH = ? AND $MEDIA_ID IS NOT NULL", arrayOf(path)) > 0
+    }
+
+    fun putScannedFile(file: PdfFile, folder: String) {
+        writableDatabase.insertWithOnConflict(
+            FILES, null,
+            valuesFor(file).apply { put(FOLDER, folder) },
+            SQLiteDatabase.CONFLICT_REPLACE
+        )
+    }
+
+    fun deleteScannedFile(path: String) {
+        writableDatabase.delete(FILES, "$PATH = ? AND $MEDIA_ID IS NULL", arrayOf(path))
+    }
+
+    private fun valuesFor(file: PdfFile) = ContentValues().apply {
+        put(PATH, file.path)
+        put(NAME, file.name)
+        put(SIZE, file.size)
+        put(LAST_MODIFIED, file.lastModified)
+    }
+
+    private fun fileAt(cursor: Cursor): PdfFile {
+        val path = cursor.getString(0)
+        return PdfFile(
+            name = cursor.getString(1),
+            path = path,
+            size = cursor.getLong(2),
+            lastModified = cursor.getLong(3),
+            file = File(path),
+            uri = null
+        )
+    }
+
+    companion object {
+        private const val DB_NAME = "library.db"
+        private const val DB_VERSION = 1
+
+        private const val FILES = "files"
+        private const val FOLDERS = "folders"
+        private const val STATE = "state"
+
+        private const val PATH = "path"
+        private const val NAME = "name"
+        private const val SIZE = "size"
+        private const val LAST_MODIFIED = "last_modified"
+        private const val MEDIA_ID = "media_id"
+        private const val FOLDER = "folder"
+        private const val HIDDEN = "hidden"
+        private const val PARENT = "parent"
+        private const val KEY = "key"
+        private const val VALUE = "value"
+
+        private val FILE_COLUMNS = arrayOf(PATH, NAME, SIZE, LAST_MODIFIED)
+    }
+}
@@ -1,122 +1,259 @@
 package com.mypdf.ocrpdfapp.repository
 
 import android.content.Context
+import android.os.Build
 import android.os.Environment
 import android.provider.MediaStore
 import com.mypdf.ocrpdfapp.model.PdfFile
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import java.io.File
 
+/**
+ * The PDFs in MediaStore plus those in Downloads and our Signed folder, kept in a
+ * [LibraryIndex] between launches. A refresh asks MediaStore only for rows changed since
+ * the last one and lists only folders whose modification time moved, so its cost follows
+ * what changed rather than the size of the library.
+ */
 class PdfRepository(private val context: Context) {
-    private var cachedPdfFiles: List<PdfFile>? = null
-    private val seenPaths = mutableSetOf<String>()
+    private val index = LibraryIndex(context)
+    private val syncLock = Mutex()
+
+    // Path to file, kept in step with the index
+    private var cachedPdfFiles: LinkedHashMap<String, PdfFile>? = null
 
     suspend fun getAllPdfFiles(): List<PdfFile> = withContext(Dispatchers.IO) {
-        // Return cached files if available
-        cachedPdfFiles?.let { return@withContext it }
+        syncLock.withLock {
+            // Return cached files if available
+            cachedPdfFiles?.let { return@withContext it.values.toList() }
+            sync().values.toList()
+        }
+    }
 
-        val pdfFiles = mutableListOf<PdfFile>()
-        seenPaths.clear()
+    /** Applies what changed since the last sync and returns the updated library. */
+    suspend fun refresh(): List<PdfFile> = withContext(Dispatchers.IO) {
+        syncLock.withLock { sync().values.toList() }
+    }
 
-        // First, try to get files from MediaStore as it's faster
-        queryMediaStore(pdfFiles)
+    private fun sync(): LinkedHashMap<String, PdfFile> {
+        val files = cachedPdfFiles ?: LinkedHashMap<String, PdfFile>().also { loaded ->
+            index.allFiles().forEach { loaded[it.path] = it }
+            cachedPdfFiles = loaded
+        }
+        // Path to its new entry, or null when it went away
+        val changes = HashMap<String, PdfFile?>()
+        index.inTransaction {
+            syncMediaStore(changes)
 
-        // Then, search in Downloads directory if needed
-        val downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
-        searchInDirectory(downloadDir, pdfFiles)
+            // Downloads is mostly covered by MediaStore; files it hasn't indexed are found here
+            val downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
+            syncFolder(downloadDir, null, changes)
 
-        // Also search in our app's directory in Documents where signed PDFs are saved
-        val documentsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS)
-        val appSignedDir = File(documentsDir, "PDFApp/Signed")
-        if (appSignedDir.exists()) {
-            searchInDirectory(appSignedDir, pdfFiles)
+            // Also search in our app's directory in Documents where signed PDFs are saved
+            val documentsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS)
+            syncFolder(File(documentsDir, "PDFApp/Signed"), null, changes)
         }
-
-        // Cache the results
-        cachedPdfFiles = pdfFiles
-        pdfFiles
+        for ((path, file) in changes) {
+            if (file == null) files.remove(path) else files[path] = file
+        }
+        return files
     }
 
-    private suspend fun queryMediaStore(pdfFiles: MutableList<PdfFile>) = withContext(Dispatchers.IO) {
-        val projection = arrayOf(
-            MediaStore.Files.FileColumns.DISPLAY_NAME,
-            MediaStore.Files.FileColumns.DATA,
-            MediaStore.Files.FileColumns.SIZE,
-            MediaStore.Files.FileColumns.DATE_MODIFIED
-        )
+    private fun syncMediaStore(changes: MutableMap<String, PdfFile?>) {
+        try {
+            // A new version means the volume was rebuilt and ids and generations start over
+            val version = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) MediaStore.getVersion(context) else ""
+            val fullSync = index.getState(KEY_MEDIA_VERSION) != version
+            if (fullSync) {
+                index.deleteAllMediaFiles().forEach { changes[it] = null }
+            }
 
-        val selection = "${MediaStore.Files.FileColumns.MIME_TYPE} = ?"
-        val selectionArgs = arrayOf("application/pdf")
-        val sortOrder = "${MediaStore.Files.FileColumns.DATE_MODIFIED} DESC"
+            var selection = MEDIA_SELECTION
+            var selectionArgs = arrayOf(PDF_MIME_TYPE)
+            var nextWatermark: Long
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                // Read before querying, so rows changed during the query are picked up next time
+                nextWatermark = MediaStore.getGeneration(context, MediaStore.VOLUME_EXTERNAL)
+                if (!fullSync) {
+                    selection += " AND ${MediaStore.MediaColumns.GENERATION_MODIFIED} > ?"
+                    selectionArgs += (index.getState(KEY_MEDIA_WATERMARK) ?: "0")
+                }
+            } else {
+                // Seconds, and inclusive, as several files can change within one second.
+                // DATE_ADDED catches copies that kept an older modification time.
+                val watermark = if (fullSync) 0L else index.getState(KEY_MEDIA_WATERMARK)?.toLongOrNull() ?: 0L
+                nextWatermark = watermark
+                if (!fullSync) {
+                    selection += " AND (${MediaStore.Files.FileColumns.DATE_MODIFIED} >= ?" +
+                        " OR ${MediaStore.Files.FileColumns.DATE_ADDED} >= ?)"
+                    selectionArgs += arrayOf(watermark.toString(), watermark.toString())
+                }
+            }
 
-        try {
+            val projection = arrayOf(
+                MediaStore.Files.FileColumns._ID,
+                MediaStore.Files.FileColumns.DISPLAY_NAME,
+                MediaStore.Files.FileColumns.DATA,
+                MediaStore.Files.FileColumns.SIZE,
+                MediaStore.Files.FileColumns.DATE_MODIFIED,
+                MediaStore.Files.FileColumns.DATE_ADDED
+            )
             context.contentResolver.query(
                 MediaStore.Files.getContentUri("external"),
                 projection,
                 selection,
                 selectionArgs,
-                sortOrder
+                null
             )?.use { cursor ->
+                val idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID)
                 val nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME)
                 val pathColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATA)
                 val sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.SIZE)
                 val dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED)
+                val addedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED)
 
                 while (cursor.moveToNext()) {
-                    val path = cursor.getString(pathColumn)
-                    if (path in seenPaths) continue
+                    val id = cursor.getLong(idColumn)
+                    val path = cursor.getString(pathColumn) ?: continue
+                    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+                        nextWatermark = maxOf(nextWatermark, cursor.getLong(dateColumn), cursor.getLong(addedColumn))
+                    }
+
+                    // A row that moved leaves its old path behind
+                    index.pathForMediaId(id)?.let { if (it != path) changes[it] = null }
 
                     val file = File(path)
-                    if (!file.exists() || !file.canRead()) continue
-
-                    seenPaths.add(path)
-                    pdfFiles.add(
-                        PdfFile(
-                            name = cursor.getString(nameColumn),
-                            path = path,
-                            size = cursor.getLong(sizeColumn),
-                            lastModified = cursor.getLong(dateColumn) * 1000,
-                            file = file,
-                            uri = null
-                        )
+                    val pdfFile = PdfFile(
+                        name = cursor.getString(nameColumn) ?: file.name,
+                        path = path,
+                        size = cursor.getLong(sizeColumn),
+                        lastModified = cursor.getLong(dateColumn) * 1000,
+                        file = file,
+                        uri = null
                     )
+                    val readable = file.exists() && file.canRead()
+                    index.putMediaFile(pdfFile, id, hidden = !readable)
+                    changes[path] = if (readable) pdfFile else null
                 }
             }
+
+            showReadableHiddenFiles(changes)
+            removeDeletedMediaFiles(changes)
+            index.putState(KEY_MEDIA_VERSION, version)
+            index.putState(KEY_MEDIA_WATERMARK, nextWatermark.toString())
         } catch (e: Exception) {
             e.printStackTrace()
         }
     }
 
-    private fun searchInDirectory(directory: File, pdfFiles: MutableList<PdfFile>) {
+    /**
+     * Files can become readable without their MediaStore row changing, e.g. when access is
+     * granted again, so the few hidden rows are checked on every sync.
+     */
+    private fun showReadableHiddenFiles(changes: MutableMap<String, PdfFile?>) {
+        for ((id, pdfFile) in index.hiddenMediaFiles()) {
+            val file = pdfFile.file ?: continue
+            if (!file.exists() || !file.canRead()) continue
+            index.putMediaFile(pdfFile, id, hidden = false)
+            changes[pdfFile.path] = pdfFile
+        }
+    }
+
+    /**
+     * Change queries don't report deleted rows. Counting the ids is cheap, and only when the
+     * count differs from the index are the ids themselves compared.
+     */
+    private fun removeDeletedMediaFiles(changes: MutableMap<String, PdfFile?>) {
+        val uri = MediaStore.Files.getContentUri("external")
+        val projection = arrayOf(MediaStore.Files.FileColumns._ID)
+        val selection = MEDIA_SELECTION
+        val selectionArgs = arrayOf(PDF_MIME_TYPE)
+
+        val count = context.contentResolver.query(uri, projection, selection, selectionArgs, null)
+            ?.use { it.count } ?: return
+        if (count.toLong() == index.mediaCount()) return
+
+        val known = index.mediaIds().toMutableMap()
+        context.contentResolver.query(uri, projection, selection, selectionArgs, null)?.use { cursor ->
+            while (cursor.moveToNext()) known.remove(cursor.getLong(0))
+        } ?: return
+        for ((id, path) in known) {
+            index.deleteMediaFile(id)
+            changes[path] = null
+        }
+    }
+
+    /**
+     * Lists [folder] only when its modification time changed, and otherwise walks down to the
+     * subfolders the index already knows. Edits that keep a file's name don't touch the
+     * folder's time, so those are only seen through MediaStore.
+     */
+    private fun syncFolder(folder: File, parent: String?, changes: MutableMap<String, PdfFile?>) {
+        val path = folder.absolutePath
+        if (!folder.isDirectory) {
+            if (index.folderModified(path) != null) {
+                index.deleteFolder(path).forEach { changes[it] = null }
+            }
+            return
+        }
         try {
-            directory.listFiles()?.forEach { file ->
+            val modified = folder.lastModified()
+            if (index.folderModified(path) == modified) {
+                index.childFolders(path).forEach { syncFolder(File(it), path, changes) }
+                return
+            }
+
+            val known = index.scannedFiles(path).toMutableMap()
+            val knownFolders = index.childFolders(path).toMutableSet()
+            folder.listFiles()?.forEach { file ->
                 if (file.isDirectory) {
-                    searchInDirectory(file, pdfFiles)
+                    knownFolders.remove(file.absolutePath)
+                    syncFolder(file, path, changes)
                 } else if (file.name.lowercase().endsWith(".pdf")) {
-                    val path = file.absolutePath
-                    if (path !in seenPaths && file.canRead()) {
-                        seenPaths.add(path)
-                        pdfFiles.add(
-                            PdfFile(
-                                name = file.name,
-                                path = path,
-                                size = file.length(),
-                                lastModified = file.lastModified(),
-                                file = file,
-                                uri = null
-                            )
-                        )
+                    val filePath = file.absolutePath
+                    val previous = known.remove(filePath)
+                    if (!file.canRead() || index.isMediaFile(filePath)) return@forEach
+                    val pdfFile = PdfFile(
+                        name = file.name,
+                        path = filePath,
+                        size = file.length(),
+                        lastModified = file.lastModified(),
+                        file = file,
+                        uri = null
+                    )
+                    if (pdfFile != previous) {
+                        index.putScannedFile(pdfFile, path)
+                        changes[filePath] = pdfFile
                     }
                 }
             }
+            for (gone in known.keys) {
+                index.deleteScannedFile(gone)
+                changes[gone] = null
+            }
+            for (gone in knownFolders) {
+                index.deleteFolder(gone).forEach { changes[it] = null }
+            }
+            index.putFolder(path, parent, modified)
         } catch (e: Exception) {
             e.printStackTrace()
         }
     }
 
+    /** Drops the in-memory list; the index stays for the next load. */
     fun clearCache() {
         cachedPdfFiles = null
-        seenPaths.clear()
     }
-} 
\ No newline at end of file
+
+    companion object {
+        private const val PDF_MIME_TYPE = "application/pdf"
+        private const val KEY_MEDIA_VERSION = "media_version"
+        private const val KEY_MEDIA_WATERMARK = "media_watermark"
+
+        // Rows without a path are never indexed, so counting them would defeat the count check
+        private const val MEDIA_SELECTION =
+            "${MediaStore.Files.FileColumns.MIME_TYPE} = ? AND ${MediaStore.Files.FileColumns.DATA} IS NOT NULL"
+    }
+}
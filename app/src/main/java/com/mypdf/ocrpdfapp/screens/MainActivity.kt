@@ -2,15 +2,14 @@ package com.mypdf.ocrpdfapp.screens
 
 import android.Manifest
 import android.content.ContentResolver
+import android.content.Context
 import android.content.Intent
 import android.content.pm.PackageManager
 import android.graphics.Bitmap
-import android.graphics.pdf.PdfRenderer
 import android.net.Uri
 import android.os.Build
 import android.os.Bundle
 import android.os.Environment
-import android.os.ParcelFileDescriptor
 import android.provider.Settings
 import android.util.Log
 import android.util.LruCache
@@ -44,7 +43,9 @@ import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.grid.GridCells
 import androidx.compose.foundation.lazy.grid.LazyVerticalGrid
 import androidx.compose.foundation.lazy.grid.items
+import androidx.compose.foundation.lazy.grid.rememberLazyGridState
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.ArrowBack
 import androidx.compose.material.icons.filled.Close
@@ -68,23 +69,30 @@ import androidx.compose.material3.Text
 import androidx.compose.material3.TextField
 import androidx.compose.material3.TopAppBar
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
 import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
-import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.runtime.setValue
+import androidx.compose.runtime.snapshotFlow
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.asImageBitmap
 import androidx.compose.ui.layout.ContentScale
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
 import androidx.core.content.ContextCompat
 import androidx.lifecycle.compose.collectAsStateWithLifecycle
 import com.itextpdf.text.pdf.PdfReader
 import com.mypdf.ocrpdfapp.model.PdfFile
+import com.mypdf.ocrpdfapp.render.CachePriority
+import com.mypdf.ocrpdfapp.render.CacheRegistry
+import com.mypdf.ocrpdfapp.render.PageImageService
+import com.mypdf.ocrpdfapp.render.RenderMetrics
+import com.mypdf.ocrpdfapp.render.ThumbnailLoader
 import com.mypdf.ocrpdfapp.ui.ExtractPDFTextActivity
 import com.mypdf.ocrpdfapp.ui.PasswordDialog
 import com.mypdf.ocrpdfapp.ui.PdfViewerScreen
@@ -96,10 +104,11 @@ import com.mypdf.ocrpdfapp.util.PrefManagerVideo
 import com.mypdf.ocrpdfapp.util.showInterstitialAd
 import com.mypdf.ocrpdfapp.viewmodel.PdfViewModel
 import com.mypdf.ocrpdfapp.viewmodel.SortOrder
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.flow.distinctUntilChanged
 import java.io.File
-import kotlin.math.min
+import kotlin.math.roundToInt
 
 enum class ViewType {
     LIST,
@@ -359,6 +368,30 @@ fun PdfListScreen(
     var viewType by remember { mutableStateOf(ViewType.LIST) }
     var showPasswordDialog by remember { mutableStateOf<Pair<PdfFile, Boolean>?>(null) }
     val context = LocalContext.current
+    val listState = rememberLazyListState()
+    val gridState = rememberLazyGridState()
+    val density = LocalDensity.current.density
+
+    // Thumbnails just past the last visible item load in the background, behind visible ones,
+    // and the thumbnail cache is sized for what is on screen plus that prefetch window
+    LaunchedEffect(viewType, pdfFiles) {
+        val size = if (viewType == ViewType.GRID) ThumbnailSize.GRID else ThumbnailSize.LIST
+        snapshotFlow {
+            when (viewType) {
+                // The list starts with an ad item
+                ViewType.LIST -> listState.layoutInfo.visibleItemsInfo.let { it.size to it.lastOrNull()?.index?.minus(1) }
+                ViewType.GRID -> gridState.layoutInfo.visibleItemsInfo.let { it.size to it.lastOrNull()?.index }
+            }
+        }
+            .distinctUntilChanged()
+            .collectLatest { (visible, last) ->
+                if (last == null) return@collectLatest
+                ThumbnailCache.fitWindow(visible, THUMBNAIL_PREFETCH_DEPTH, size.estimatedBytes(density))
+                val from = (last + 1).coerceIn(0, pdfFiles.size)
+                val to = (from + THUMBNAIL_PREFETCH_DEPTH).coerceAtMost(pdfFiles.size)
+                ThumbnailLoader.prefetch(context, pdfFiles.subList(from, to), size.widthPx(density))
+            }
+    }
 
     Scaffold(
         topBar = {
@@ -509,6 +542,7 @@ fun PdfListScreen(
             when (viewType) {
                 ViewType.LIST -> {
                     LazyColumn(
+                        state = listState,
                         modifier = Modifier
                             .fillMaxSize()
                             .padding(paddingValues),
@@ -553,6 +587,7 @@ fun PdfListScreen(
                 ViewType.GRID -> {
                     LazyVerticalGrid(
                         columns = GridCells.Adaptive(minSize = 160.dp),
+                        state = gridState,
                         modifier = Modifier
                             .fillMaxSize()
                             .padding(paddingValues),
@@ -632,27 +667,92 @@ private fun checkPdfProtection(pdf: PdfFile, onResult: (Boolean) -> Unit) {
     }
 }
 
+/** Thumbnail widths by layout, cached apart so each layout gets sharp thumbnails. */
+enum class ThumbnailSize(private val widthDp: Int) {
+    LIST(100),
+    GRID(200);
+
+    fun widthPx(density: Float): Int = (widthDp * density).roundToInt()
+
+    /** RGB_565 bytes of a portrait page thumbnail of this size. */
+    fun estimatedBytes(density: Float): Int {
+        val width = widthPx(density)
+        return width * (width * PORTRAIT_ASPECT).roundToInt() * 2
+    }
+
+    private companion object {
+        // A4 height over width
+        const val PORTRAIT_ASPECT = 1.414f
+    }
+}
+
+/**
+ * Thumbnails by path and [ThumbnailSize], as pins on the RGB_565 bitmaps in PageBitmapCache.
+ * The budget follows what the library shows: the visible items plus the prefetch depth on
+ * both sides, see [fitWindow]. Hits and evictions are counted in RenderMetrics.
+ */
 object ThumbnailCache {
-    private val maxMemory = (Runtime.getRuntime().maxMemory() / 1024).toInt()
-    private val cacheSize = maxMemory / 8 // Use 1/8th of available memory for cache
+    // Upper bound whatever the window; until the first window is known the cache starts small
+    private val maxBudget = (Runtime.getRuntime().maxMemory() / 8).toInt()
+    private const val INITIAL_BUDGET = 4 * 1024 * 1024
+
+    private data class Key(val path: String, val size: ThumbnailSize)
 
-    private val memoryCache = object : LruCache<String, Bitmap>(cacheSize) {
-        override fun sizeOf(key: String, bitmap: Bitmap): Int {
-            return bitmap.byteCount / 1024
+    private val memoryCache = object : LruCache<Key, Bitmap>(minOf(INITIAL_BUDGET, maxBudget)) {
+        override fun sizeOf(key: Key, bitmap: Bitmap): Int {
+            return bitmap.allocationByteCount
+        }
+
+        override fun entryRemoved(evicted: Boolean, key: Key, oldValue: Bitmap, newValue: Bitmap?) {
+            if (evicted) RenderMetrics.recordEviction("thumbnail memory")
+            if (oldValue !== newValue) PageImageService.release(oldValue)
         }
     }
 
-    fun addBitmapToCache(key: String, bitmap: Bitmap) {
-        if (getBitmapFromCache(key) == null) {
+    private val trimmable = CacheRegistry.lruCache("Thumbnails", CachePriority.NORMAL, memoryCache)
+
+    init {
+        CacheRegistry.register(trimmable)
+    }
+
+    fun addBitmapToCache(path: String, size: ThumbnailSize, bitmap: Bitmap) {
+        val key = Key(path, size)
+        if (memoryCache.get(key) == null && PageImageService.retain(bitmap)) {
             memoryCache.put(key, bitmap)
         }
     }
 
-    fun getBitmapFromCache(key: String): Bitmap? {
-        return memoryCache.get(key)
+    fun getBitmapFromCache(path: String, size: ThumbnailSize): Bitmap? {
+        val bitmap = memoryCache.get(Key(path, size))
+        RenderMetrics.recordLookup("thumbnail memory", bitmap != null)
+        return bitmap
+    }
+
+    /**
+     * Budgets for [visibleItems] thumbnails of [bytesPerItem] on screen and [prefetchDepth]
+     * more on either side, so scrolling back a little is still a hit.
+     */
+    fun fitWindow(visibleItems: Int, prefetchDepth: Int, bytesPerItem: Int) {
+        val budget = ((visibleItems + 2 * prefetchDepth).toLong() * bytesPerItem)
+            .coerceIn(bytesPerItem.toLong(), maxBudget.toLong()).toInt()
+        if (budget != memoryCache.maxSize()) memoryCache.resize(budget)
     }
 }
 
+// Items past the visible ones whose thumbnails are loaded ahead
+private const val THUMBNAIL_PREFETCH_DEPTH = 8
+
+/** First page at [size], pinned for the caller; see [PageImageService.release]. */
+private suspend fun loadThumbnail(context: Context, pdf: PdfFile, size: ThumbnailSize, density: Float): Bitmap? {
+    ThumbnailCache.getBitmapFromCache(pdf.path, size)
+        ?.takeIf { PageImageService.retain(it) }
+        ?.let { return it }
+
+    val bitmap = ThumbnailLoader.load(context, pdf, size.widthPx(density)) ?: return null
+    ThumbnailCache.addBitmapToCache(pdf.path, size, bitmap)
+    return bitmap
+}
+
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun PdfListItem(
@@ -660,47 +760,22 @@ fun PdfListItem(
     onClick: () -> Unit
 ) {
     var thumbnail by remember { mutableStateOf<Bitmap?>(null) }
-    val coroutineScope = rememberCoroutineScope()
-
-    LaunchedEffect(pdf) {
-        coroutineScope.launch(Dispatchers.IO) {
-            try {
-                // Try to get from cache first
-                thumbnail = ThumbnailCache.getBitmapFromCache(pdf.path)
-
-                if (thumbnail == null) {
-                    val pdfRenderer = PdfRenderer(
-                        ParcelFileDescriptor.open(pdf.file, ParcelFileDescriptor.MODE_READ_ONLY)
-                    )
+    val context = LocalContext.current
+    val density = LocalDensity.current.density
 
-                    if (pdfRenderer.pageCount > 0) {
-                        val firstPage = pdfRenderer.openPage(0)
-                        // Create a smaller bitmap for thumbnail
-                        val width = min(firstPage.width, 200)
-                        val height =
-                            (width * (firstPage.height.toFloat() / firstPage.width)).toInt()
-                        val bitmap = Bitmap.createBitmap(
-                            width,
-                            height,
-                            Bitmap.Config.ARGB_8888
-                        )
-                        firstPage.render(
-                            bitmap,
-                            null,
-                            null,
-                            PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY
-                        )
-                        firstPage.close()
-                        pdfRenderer.close()
+    // The pinned thumbnail is handed back when it is replaced or the item leaves
+    DisposableEffect(thumbnail) {
+        val shown = thumbnail
+        onDispose { PageImageService.release(shown) }
+    }
 
-                        // Cache the thumbnail
-                        ThumbnailCache.addBitmapToCache(pdf.path, bitmap)
-                        thumbnail = bitmap
-                    }
-                }
-            } catch (e: Exception) {
-                e.printStackTrace()
-            }
+    LaunchedEffect(pdf) {
+        try {
+            thumbnail = loadThumbnail(context, pdf, ThumbnailSize.LIST, density)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            e.printStackTrace()
         }
     }
 
@@ -776,47 +851,22 @@ fun PdfGridItem(
     onClick: () -> Unit
 ) {
     var thumbnail by remember { mutableStateOf<Bitmap?>(null) }
-    val coroutineScope = rememberCoroutineScope()
-
-    LaunchedEffect(pdf) {
-        coroutineScope.launch(Dispatchers.IO) {
-            try {
-                // Try to get from cache first
-                thumbnail = ThumbnailCache.getBitmapFromCache(pdf.path)
-
-                if (thumbnail == null) {
-                    val pdfRenderer = PdfRenderer(
-                        ParcelFileDescriptor.open(pdf.file, ParcelFileDescriptor.MODE_READ_ONLY)
-                    )
+    val context = LocalContext.current
+    val density = LocalDensity.current.density
 
-                    if (pdfRenderer.pageCount > 0) {
-                        val firstPage = pdfRenderer.openPage(0)
-                        // Create a smaller bitmap for thumbnail
-                        val width = min(firstPage.width, 300)
-                        val height =
-                            (width * (firstPage.height.toFloat() / firstPage.width)).toInt()
-                        val bitmap = Bitmap.createBitmap(
-                            width,
-                            height,
-                            Bitmap.Config.ARGB_8888
-                        )
-                        firstPage.render(
-                            bitmap,
-                            null,
-                            null,
-                            PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY
-                        )
-                        firstPage.close()
-                        pdfRenderer.close()
+    // The pinned thumbnail is handed back when it is replaced or the item leaves
+    DisposableEffect(thumbnail) {
+        val shown = thumbnail
+        onDispose { PageImageService.release(shown) }
+    }
 
-                        // Cache the thumbnail
-                        ThumbnailCache.addBitmapToCache(pdf.path, bitmap)
-                        thumbnail = bitmap
-                    }
-                }
-            } catch (e: Exception) {
-                e.printStackTrace()
-            }
+    LaunchedEffect(pdf) {
+        try {
+            thumbnail = loadThumbnail(context, pdf, ThumbnailSize.GRID, density)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            e.printStackTrace()
         }
     }
 
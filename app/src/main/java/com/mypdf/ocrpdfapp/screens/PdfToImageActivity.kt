@@ -3,7 +3,6 @@ package com.mypdf.ocrpdfapp.screens
 import android.content.Context
 import android.content.Intent
 import android.graphics.Bitmap
-import android.graphics.pdf.PdfRenderer
 import android.net.Uri
 import android.os.Bundle
 import android.os.Environment
@@ -37,6 +36,11 @@ import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.unit.dp
+import com.mypdf.ocrpdfapp.render.BitmapPool
+import com.mypdf.ocrpdfapp.render.BitmapUse
+import com.mypdf.ocrpdfapp.render.PageImageService
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
+import com.mypdf.ocrpdfapp.render.RenderConfigPolicy
 import com.mypdf.ocrpdfapp.ui.theme.PDFTheme
 import com.mypdf.ocrpdfapp.util.FileUtils
 import kotlinx.coroutines.Dispatchers
@@ -46,6 +50,7 @@ import java.io.File
 import java.io.FileOutputStream
 import java.text.SimpleDateFormat
 import java.util.*
+import kotlin.math.min
 
 class PdfToImageActivity : ComponentActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -350,14 +355,17 @@ fun PdfToImageScreen(
     }
 }
 
+private const val PREVIEW_WIDTH = 400
+
 suspend fun convertPdfToImages(context: Context, pdfUri: Uri): Triple<Boolean, List<Bitmap>, String> {
     return withContext(Dispatchers.IO) {
+        var session: PdfRenderSession? = null
         try {
-            val pdfRenderer = PdfRenderer(
-                context.contentResolver.openFileDescriptor(pdfUri, "r")!!
-            )
+            // Shared with any screen showing the same document; export renders stay uncached
+            val opened = PageImageService.openSession(context, pdfUri)
+            session = opened
             
-            val pageCount = pdfRenderer.pageCount
+            val pageCount = opened.pageCount
             val extractedImages = mutableListOf<Bitmap>()
             
             // Create directory if it doesn't exist
@@ -377,17 +385,9 @@ suspend fun convertPdfToImages(context: Context, pdfUri: Uri): Triple<Boolean, L
             
             // Extract each page as an image
             for (i in 0 until pageCount) {
-                val page = pdfRenderer.openPage(i)
-                
-                // Create bitmap with the page dimensions
-                val bitmap = Bitmap.createBitmap(
-                    page.width,
-                    page.height,
-                    Bitmap.Config.ARGB_8888
-                )
-                
-                // Render the page to the bitmap
-                page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
+                // Page-sized bitmap from the shared pool; consecutive pages usually reuse it
+                val bitmap = opened.renderPage(i, 1f)
+                    ?: throw IllegalStateException("Could not render page ${i + 1}")
                 
                 // Save the bitmap to storage
                 val imageFile = File(outputDir, "page_${i + 1}.jpg")
@@ -395,11 +395,12 @@ suspend fun convertPdfToImages(context: Context, pdfUri: Uri): Triple<Boolean, L
                     bitmap.compress(Bitmap.CompressFormat.JPEG, 100, out)
                 }
                 
-                // Add to the list of extracted images
-                extractedImages.add(bitmap)
-                
-                // Close the page
-                page.close()
+                // Keep only a small preview for the list and return the full page to the pool
+                val previewWidth = min(bitmap.width, PREVIEW_WIDTH)
+                val previewHeight = (bitmap.height * (previewWidth.toFloat() / bitmap.width)).toInt().coerceAtLeast(1)
+                val preview = Bitmap.createScaledBitmap(bitmap, previewWidth, previewHeight, true)
+                extractedImages.add(RenderConfigPolicy.finish(preview, BitmapUse.THUMBNAIL))
+                BitmapPool.release(bitmap)
                 
                 // Add the image to the media store
                 MediaStore.Images.Media.insertImage(
@@ -410,9 +411,6 @@ suspend fun convertPdfToImages(context: Context, pdfUri: Uri): Triple<Boolean, L
                 )
             }
             
-            // Close the renderer
-            pdfRenderer.close()
-            
             // Make the images visible in gallery
             val intent = Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE)
             intent.data = Uri.fromFile(outputDir)
@@ -422,6 +420,8 @@ suspend fun convertPdfToImages(context: Context, pdfUri: Uri): Triple<Boolean, L
         } catch (e: Exception) {
             e.printStackTrace()
             Triple(false, emptyList(), "")
+        } finally {
+            session?.let { PageImageService.releaseSession(it) }
         }
     }
 } 
\ No newline at end of file
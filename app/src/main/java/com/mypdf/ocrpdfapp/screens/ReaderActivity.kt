@@ -25,6 +25,7 @@ import androidx.compose.foundation.layout.fillMaxSize
 import androidx.compose.material3.MaterialTheme
 import androidx.compose.material3.Surface
 import androidx.compose.runtime.getValue
+import androidx.compose.runtime.key
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.ui.Modifier
 import androidx.core.content.ContextCompat
@@ -40,6 +41,8 @@ class ReaderActivity : ComponentActivity() {
     private val TAG = "MainActivity"
     private val viewModel: PdfViewModel by viewModels()
     private var permissionsGranted = mutableStateOf(false)
+    private var searchQuery = mutableStateOf<String?>(null)
+    private var searchPage = mutableStateOf(1)
 
     // Track if the PDF was opened from an external intent
     var openedFromIntent = false
@@ -102,12 +105,17 @@ class ReaderActivity : ComponentActivity() {
                     ) { pdf ->
                         when {
                             pdf != null -> {
-                                PdfViewerScreen(
-                                    pdfFile = pdf,
-                                    onBackClick = {
-                                        finish()
-                                    }
-                                )
+                                // A new search request for the same file starts the viewer over
+                                key(searchQuery.value, searchPage.value) {
+                                    PdfViewerScreen(
+                                        pdfFile = pdf,
+                                        onBackClick = {
+                                            finish()
+                                        },
+                                        initialSearchQuery = searchQuery.value,
+                                        initialPage = searchPage.value
+                                    )
+                                }
                             }
                         }
                     }
@@ -123,6 +131,27 @@ class ReaderActivity : ComponentActivity() {
     }
 
     private fun handleIntent(intent: Intent) {
+        searchQuery.value = intent.getStringExtra(EXTRA_SEARCH_QUERY)
+        searchPage.value = intent.getIntExtra(EXTRA_SEARCH_PAGE, 1)
+        // Our own screens pass the file path too, so the document keeps the same fingerprint
+        // as in the library (see PdfFile.fingerprint) and reuses its cached pages and word positions
+        val localPath = intent.getStringExtra(EXTRA_PDF_PATH)
+        if (localPath != null) {
+            val file = File(localPath)
+            if (file.canRead()) {
+                viewModel.selectPdf(
+                    PdfFile(
+                        name = file.name,
+                        path = file.absolutePath,
+                        size = file.length(),
+                        lastModified = file.lastModified(),
+                        file = file,
+                        uri = null
+                    )
+                )
+                return
+            }
+        }
         if (intent.action == Intent.ACTION_VIEW && intent.data != null) {
             val uri = intent.data
             if (uri != null) {
@@ -208,4 +237,15 @@ class ReaderActivity : ComponentActivity() {
         // Check permissions again when app comes back to foreground
         updatePermissionStatus()
     }
+
+    companion object {
+        /** Absolute path of a local PDF, preferred over the intent data when readable. */
+        const val EXTRA_PDF_PATH = "pdf_path"
+
+        /** Text to search for and highlight once the document is open. */
+        const val EXTRA_SEARCH_QUERY = "search_query"
+
+        /** 1-based page to start the search from. */
+        const val EXTRA_SEARCH_PAGE = "search_page"
+    }
 }
@@ -4,7 +4,6 @@ import android.content.Context
 import android.content.Intent
 import android.graphics.Bitmap
 import android.graphics.Color
-import android.graphics.pdf.PdfRenderer
 import android.net.Uri
 import android.os.Bundle
 import android.os.Environment
@@ -44,13 +43,20 @@ import androidx.compose.ui.viewinterop.AndroidView
 import androidx.compose.ui.window.Dialog
 import com.mypdf.ocrpdfapp.R
 import com.mypdf.ocrpdfapp.ui.theme.PDFTheme
+import com.mypdf.ocrpdfapp.render.PageGeometryTable
+import com.mypdf.ocrpdfapp.render.PageImageService
+import com.mypdf.ocrpdfapp.render.PagePrefetcher
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
 import com.mypdf.ocrpdfapp.util.FileUtils
 import com.github.gcacace.signaturepad.views.SignaturePad
 import com.tom_roush.pdfbox.android.PDFBoxResourceLoader
 import com.tom_roush.pdfbox.pdmodel.PDDocument
 import com.tom_roush.pdfbox.pdmodel.PDPageContentStream
 import com.tom_roush.pdfbox.pdmodel.graphics.image.LosslessFactory
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.awaitCancellation
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import java.io.File
@@ -110,6 +116,80 @@ fun SignPdfScreen(
     var signaturePosition by remember { mutableStateOf(Offset(0f, 0f)) }
     var isSignaturePlaced by remember { mutableStateOf(false) }
     var isSignatureMode by remember { mutableStateOf(false) }
+    var session by remember { mutableStateOf<PdfRenderSession?>(null) }
+    var geometry by remember(session) { mutableStateOf<PageGeometryTable?>(null) }
+
+    // Hand the previous page back once the new one has replaced it on screen
+    DisposableEffect(pdfPreviewBitmap) {
+        val shown = pdfPreviewBitmap
+        onDispose { PageImageService.release(shown) }
+    }
+
+    // Sized for the full-width, 400dp high preview box
+    val previewWidth = context.resources.displayMetrics.widthPixels
+    val previewHeight = with(LocalDensity.current) { 400.dp.roundToPx() }
+
+    // One renderer for the chosen document, kept across page flips and released when it changes
+    LaunchedEffect(selectedPdfUri) {
+        val uri = selectedPdfUri ?: return@LaunchedEffect
+        pdfPreviewBitmap = null
+        val opened = try {
+            withContext(NonCancellable) { PageImageService.openSession(context, uri) }
+        } catch (e: Exception) {
+            e.printStackTrace()
+            totalPages = 0
+            Toast.makeText(context, "Could not open PDF", Toast.LENGTH_SHORT).show()
+            return@LaunchedEffect
+        }
+        try {
+            totalPages = opened.pageCount
+            session = opened
+            awaitCancellation()
+        } finally {
+            session = null
+            PageImageService.releaseSession(opened)
+        }
+    }
+
+    // Page sizes let the neighbours be prefetched at the scale the preview will ask for
+    LaunchedEffect(session) {
+        val activeSession = session ?: return@LaunchedEffect
+        geometry = try {
+            activeSession.loadGeometry()
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            e.printStackTrace()
+            null
+        }
+    }
+
+    val prefetcher = remember(session, geometry, previewWidth, previewHeight) {
+        val activeSession = session
+        val table = geometry
+        if (activeSession != null && table != null) {
+            PagePrefetcher(activeSession, scaleForPage = { table.fitScale(it, previewWidth, previewHeight) })
+        } else {
+            null
+        }
+    }
+
+    // Pages already shown or prefetched come straight from memory; a flip cancels the last prefetch
+    LaunchedEffect(session, prefetcher, currentPage) {
+        val activeSession = session ?: return@LaunchedEffect
+        if (currentPage >= activeSession.pageCount) return@LaunchedEffect
+        val page = try {
+            PageImageService.getPage(activeSession, currentPage, previewWidth, previewHeight)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            e.printStackTrace()
+            null
+        }
+        // Re-running for the same page pins it again, so that extra pin goes straight back
+        if (page != null && page !== pdfPreviewBitmap) pdfPreviewBitmap = page else PageImageService.release(page)
+        prefetcher?.prefetchAround(currentPage)
+    }
 
     // Load initial PDF if provided
     LaunchedEffect(initialPdfUri) {
@@ -121,14 +201,7 @@ fun SignPdfScreen(
             signedPdfPath = ""
             isSignaturePlaced = false
             isSignatureMode = false
-
-            // Load PDF preview
-            coroutineScope.launch {
-                val result = loadPdfPreview(context, uri)
-                pdfPreviewBitmap = result.first
-                totalPages = result.second
-                currentPage = 0
-            }
+            currentPage = 0
         }
     }
 
@@ -143,14 +216,7 @@ fun SignPdfScreen(
             signedPdfPath = ""
             isSignaturePlaced = false
             isSignatureMode = false
-
-            // Load PDF preview
-            coroutineScope.launch {
-                val result = loadPdfPreview(context, it)
-                pdfPreviewBitmap = result.first
-                totalPages = result.second
-                currentPage = 0
-            }
+            currentPage = 0
         }
     }
 
@@ -321,10 +387,6 @@ fun SignPdfScreen(
                             onClick = {
                                 if (currentPage > 0) {
                                     currentPage--
-                                    coroutineScope.launch {
-                                        pdfPreviewBitmap =
-                                            loadPdfPage(context, selectedPdfUri!!, currentPage)
-                                    }
                                 }
                             },
                             enabled = currentPage > 0
@@ -341,10 +403,6 @@ fun SignPdfScreen(
                             onClick = {
                                 if (currentPage < totalPages - 1) {
                                     currentPage++
-                                    coroutineScope.launch {
-                                        pdfPreviewBitmap =
-                                            loadPdfPage(context, selectedPdfUri!!, currentPage)
-                                    }
                                 }
                             },
                             enabled = currentPage < totalPages - 1
@@ -657,61 +715,6 @@ fun SignaturePadDialog(
     }
 }
 
-suspend fun loadPdfPreview(context: Context, pdfUri: Uri): Pair<Bitmap, Int> {
-    return withContext(Dispatchers.IO) {
-        try {
-            val pdfRenderer = PdfRenderer(
-                context.contentResolver.openFileDescriptor(pdfUri, "r")!!
-            )
-
-            val pageCount = pdfRenderer.pageCount
-            val firstPage = pdfRenderer.openPage(0)
-
-            val bitmap = Bitmap.createBitmap(
-                firstPage.width,
-                firstPage.height,
-                Bitmap.Config.ARGB_8888
-            )
-
-            firstPage.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
-            firstPage.close()
-            pdfRenderer.close()
-
-            Pair(bitmap, pageCount)
-        } catch (e: Exception) {
-            e.printStackTrace()
-            Pair(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888), 0)
-        }
-    }
-}
-
-suspend fun loadPdfPage(context: Context, pdfUri: Uri, pageIndex: Int): Bitmap {
-    return withContext(Dispatchers.IO) {
-        try {
-            val pdfRenderer = PdfRenderer(
-                context.contentResolver.openFileDescriptor(pdfUri, "r")!!
-            )
-
-            val page = pdfRenderer.openPage(pageIndex)
-
-            val bitmap = Bitmap.createBitmap(
-                page.width,
-                page.height,
-                Bitmap.Config.ARGB_8888
-            )
-
-            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
-            page.close()
-            pdfRenderer.close()
-
-            bitmap
-        } catch (e: Exception) {
-            e.printStackTrace()
-            Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888)
-        }
-    }
-}
-
 suspend fun applySignatureToPdf(
     context: Context,
     pdfUri: Uri,
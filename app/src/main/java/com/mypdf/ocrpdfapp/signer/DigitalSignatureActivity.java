@@ -32,11 +32,16 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mypdf.ocrpdfapp.R;
+import com.mypdf.ocrpdfapp.render.PageColorMode;
+import com.mypdf.ocrpdfapp.render.PageColorSettings;
+import com.mypdf.ocrpdfapp.render.RenderConfigPolicy;
 import com.mypdf.ocrpdfapp.signer.Document.PDSElementViewer;
 import com.mypdf.ocrpdfapp.signer.Document.PDSPageViewer;
+import com.mypdf.ocrpdfapp.signer.Document.PDSPageViewerPool;
 import com.mypdf.ocrpdfapp.signer.Document.PDSSaveAsPDFAsyncTask;
 import com.mypdf.ocrpdfapp.signer.Document.PDSViewPager;
 import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFDocument;
+import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFPage;
 import com.mypdf.ocrpdfapp.signer.PDSModel.PDSElement;
 import com.mypdf.ocrpdfapp.signer.Signature.SignatureActivity;
 import com.mypdf.ocrpdfapp.signer.Signature.SignatureUtils;
@@ -56,6 +61,9 @@ public class DigitalSignatureActivity extends AppCompatActivity {
     private static final int SIGNATURE_Request_CODE = 43;
     private static final int IMAGE_REQUEST_CODE = 45;
     private static final int DIGITALID_REQUEST_CODE = 44;
+    public static final String EXTRA_PREFETCH_DEPTH = "PrefetchDepth";
+    private static final int DEFAULT_PREFETCH_DEPTH = 2;
+    private static final int LOW_MEMORY_PREFETCH_DEPTH = 1;
     Uri pdfData = null;
     private PDSViewPager mViewPager;
     PDSPageAdapter imageAdapter;
@@ -64,6 +72,7 @@ public class DigitalSignatureActivity extends AppCompatActivity {
     private boolean mFirstTap = true;
     private int mVisibleWindowHt = 0;
     private PDSPDFDocument mDocument = null;
+    private PDSPageViewerPool mPageViewerPool = null;
     private Uri mdigitalID = null;
     public String mdigitalIDPassword = null;
     private Menu mmenu = null;
@@ -81,6 +90,7 @@ public class DigitalSignatureActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        this.mPageViewerPool = new PDSPageViewerPool(this);
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         this.getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
         setContentView(R.layout.activity_digital_signature);
@@ -88,6 +98,8 @@ public class DigitalSignatureActivity extends AppCompatActivity {
         btnSave = findViewById(R.id.btnSave);
         btnSave.setEnabled(false);
         mViewPager = findViewById(R.id.viewpager);
+        int defaultDepth = RenderConfigPolicy.isLowMemoryMode() ? LOW_MEMORY_PREFETCH_DEPTH : DEFAULT_PREFETCH_DEPTH;
+        mViewPager.setPrefetchDepth(getIntent().getIntExtra(EXTRA_PREFETCH_DEPTH, defaultDepth));
         savingProgress = findViewById(R.id.savingProgress);
 
         Intent intent = getIntent();
@@ -179,12 +191,46 @@ public class DigitalSignatureActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_page_colors) {
+            showPageColorModes();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showPageColorModes() {
+        final PageColorMode[] modes = PageColorMode.values();
+        String[] labels = new String[modes.length];
+        for (int i = 0; i < modes.length; i++) {
+            labels[i] = modes[i].getLabel();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Page colors")
+                .setSingleChoiceItems(labels, PageColorSettings.getMode().ordinal(), new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        PageColorSettings.setMode(modes[which]);
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         onBackPressed();
         return true;
     }
 
+    @Override
+    protected void onDestroy() {
+        if (this.mPageViewerPool != null) {
+            this.mPageViewerPool.clear();
+        }
+        super.onDestroy();
+    }
+
     @Override
     public void onBackPressed() {
         if (isSigned) {
@@ -250,10 +296,18 @@ public class DigitalSignatureActivity extends AppCompatActivity {
         return this.mVisibleWindowHt;
     }
 
+    public int getCurrentPage() {
+        return this.mViewPager.getCurrentItem();
+    }
+
     public PDSPDFDocument getDocument() {
         return this.mDocument;
     }
 
+    public PDSPageViewerPool getPageViewerPool() {
+        return this.mPageViewerPool;
+    }
+
     public void GetPassword() {
         AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(this);
         LayoutInflater inflater = this.getLayoutInflater();
@@ -364,6 +418,10 @@ public class DigitalSignatureActivity extends AppCompatActivity {
         stringBuilder.append(this.mDocument.getNumPages());
         textView.setText(stringBuilder.toString());
         resetTimerHandlerForPageNumber(1000);
+        PDSPDFPage page = this.mDocument.getPage(i - 1);
+        if (page != null && page.getPageViewer() != null) {
+            page.getPageViewer().ensureRendered();
+        }
     }
 
     private void resetTimerHandlerForPageNumber(int i) {
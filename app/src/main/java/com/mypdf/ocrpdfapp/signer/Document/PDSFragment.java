@@ -27,7 +27,8 @@ public class PDSFragment extends Fragment {
         View inflate = layoutInflater.inflate(R.layout.fragment_layout, viewGroup, false);
         LinearLayout linearLayout = (LinearLayout) inflate.findViewById(R.id.fragment);
         try {
-            PDSPageViewer fASPageViewer = new PDSPageViewer(viewGroup.getContext(),(DigitalSignatureActivity) getActivity(),((DigitalSignatureActivity) getActivity()).getDocument().getPage(getArguments().getInt("pageNum")));
+            DigitalSignatureActivity activity = (DigitalSignatureActivity) getActivity();
+            PDSPageViewer fASPageViewer = activity.getPageViewerPool().acquire(activity.getDocument().getPage(getArguments().getInt("pageNum")));
             this.mPageViewer = fASPageViewer;
             linearLayout.addView(fASPageViewer);
         } catch (Exception e) {
@@ -38,7 +39,12 @@ public class PDSFragment extends Fragment {
 
     public void onDestroyView() {
         if (this.mPageViewer != null) {
-            this.mPageViewer.cancelRendering();
+            DigitalSignatureActivity activity = (DigitalSignatureActivity) getActivity();
+            if (activity != null && activity.getPageViewerPool() != null) {
+                activity.getPageViewerPool().release(this.mPageViewer);
+            } else {
+                this.mPageViewer.cancelRendering();
+            }
             this.mPageViewer = null;
         }
         super.onDestroyView();
@@ -7,9 +7,9 @@ import android.graphics.Matrix;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.SystemClock;
+import android.util.Log;
 import android.util.SizeF;
 import android.view.DragEvent;
 import android.view.GestureDetector;
@@ -29,6 +29,12 @@ import android.widget.RelativeLayout;
 import androidx.core.view.MotionEventCompat;
 import androidx.core.view.ViewCompat;
 
+import com.mypdf.ocrpdfapp.render.BitmapPool;
+import com.mypdf.ocrpdfapp.render.CachePriority;
+import com.mypdf.ocrpdfapp.render.CacheRegistry;
+import com.mypdf.ocrpdfapp.render.PageColorMode;
+import com.mypdf.ocrpdfapp.render.PageColorSettings;
+import com.mypdf.ocrpdfapp.render.TrimmableCache;
 import com.mypdf.ocrpdfapp.signer.DigitalSignatureActivity;
 import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFPage;
 import com.mypdf.ocrpdfapp.signer.PDSModel.PDSElement;
@@ -41,20 +47,26 @@ import java.io.File;
 import java.util.Observable;
 import java.util.Observer;
 
-public class PDSPageViewer extends FrameLayout implements Observer {
+public class PDSPageViewer extends FrameLayout implements Observer, TrimmableCache, PageColorSettings.Listener {
     private final ImageView mImageView;
     private final LayoutInflater mInflater;
     private final LinearLayout mProgressView;
     private final ScaleGestureListener mScaleGestureListener;
     private ScaleGestureDetector mScaleGestureDetector = null;
     private GestureDetector mGestureDetector = null;
-    PDSRenderPageAsyncTask mInitialRenderingTask = null;
-    private PDSRenderPageAsyncTask mRenderPageTask = null;
+    PDSRenderPageTask mInitialRenderingTask = null;
+    PDSRenderPageTask mPreviewRenderingTask = null;
+    private final PDSRenderScheduler.Token mRenderToken = new PDSRenderScheduler.Token();
+    private final PDSTileView mTileView;
     private final Context mContext;
     private float mScaleFactor = 1.0f;
     private PointF mScroll = new PointF(0.0f, 0.0f);
     private PointF mFocus = new PointF(0.0f, 0.0f);
+    private static final String TAG = "PDSPageViewer";
     private static final int DRAG_SHADOW_OPACITY = 180;
+    private static final float PREVIEW_SCALE = 0.25f;
+    private static final float MAX_SCALE_FACTOR = 8.0f;
+    private static final long TILE_UPDATE_DELAY = 100;
     private float mStartScaleFactor = 1.0f;
     private int mMaxScrollX = 0;
     private int mMaxScrollY = 0;
@@ -67,14 +79,17 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     private int mKeyboardHeight = 0;
     private boolean mKeyboardShown = false;
     private boolean mResizeInOperation = false;
-    private boolean mRenderPageTaskPending = false;
-    private float mBitmapScale = 1.0f;
     private PDSPDFPage mPage;
     SizeF mInitialImageSize = null;
     private Bitmap mImage = null;
     private RectF mImageContentRect = null;
     private Matrix mToPDFCoordinatesMatrix = null;
     private boolean mRenderingComplete = false;
+    private boolean mElementsRendered = false;
+    private boolean mListenersAttached = false;
+    private boolean mImageSharp = false;
+    private long mPreviewRenderTime = -1;
+    private long mSharpRenderTime = -1;
     private Matrix mToViewCoordinatesMatrix = null;
     private float mInterceptedDownX = 0.0f;
     private float mInterceptedDownY = 0.0f;
@@ -89,6 +104,11 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     private float mTouchY = 0.0f;
     private ImageView mDragShadowView = null;
     DigitalSignatureActivity activity = null;
+    private final Runnable mTileUpdateRunnable = new Runnable() {
+        public void run() {
+            PDSPageViewer.this.updateImageFoScale();
+        }
+    };
 
     public PDSPageViewer(Context context, DigitalSignatureActivity activity, PDSPDFPage pdfPage) {
         super(context);
@@ -102,6 +122,8 @@ public class PDSPageViewer extends FrameLayout implements Observer {
         this.mScrollView = inflate.findViewById(R.id.scrollview);
         this.mPageView = inflate.findViewById(R.id.pageview);
         this.mImageView = inflate.findViewById(R.id.imageview);
+        this.mTileView = new PDSTileView(context, pdfPage);
+        this.mPageView.addView(this.mTileView, 1, new RelativeLayout.LayoutParams(-1, -1));
         setHorizontalScrollBarEnabled(true);
         setVerticalScrollBarEnabled(true);
         setScrollbarFadingEnabled(true);
@@ -267,7 +289,7 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     private boolean scale(float f) {
         this.mScaleFactor *= (f / 10000.0f) * 10000.0f;
         this.mScaleFactor = (this.mScaleFactor / 10000.0f) * 10000.0f;
-        this.mScaleFactor = Math.max(1.0f, Math.min(this.mScaleFactor, 3.0f));
+        this.mScaleFactor = Math.max(1.0f, Math.min(this.mScaleFactor, MAX_SCALE_FACTOR));
         this.mMaxScrollX = Math.round(((float) this.mScrollView.getWidth()) * (this.mScaleFactor - 1.0f));
         this.mMaxScrollY = Math.round(((float) this.mScrollView.getHeight()) * (this.mScaleFactor - 1.0f));
         int round = Math.round((this.mFocus.x * ((this.mScaleFactor / this.mStartScaleFactor) - 1.0f)) + this.mScroll.x);
@@ -277,6 +299,7 @@ public class PDSPageViewer extends FrameLayout implements Observer {
         this.mPageView.setScaleX(this.mScaleFactor);
         this.mPageView.setScaleY(this.mScaleFactor);
         this.mScrollView.scrollTo(round, round2);
+        this.mTileView.setVisibleRect(getVisibleRect());
         invalidate();
         return true;
     }
@@ -296,6 +319,11 @@ public class PDSPageViewer extends FrameLayout implements Observer {
 
     private void applyScroll(int i, int i2) {
         this.mScrollView.scrollTo(Math.max(0, Math.min(i, getMaxScrollX())), Math.max(0, Math.min(i2, getMaxScrollY())));
+        if (this.mScaleFactor != 1.0f) {
+            this.mTileView.setVisibleRect(getVisibleRect());
+            removeCallbacks(this.mTileUpdateRunnable);
+            postDelayed(this.mTileUpdateRunnable, TILE_UPDATE_DELAY);
+        }
     }
 
     private int getMaxScrollY() {
@@ -402,11 +430,22 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     }
 
     private void setImageBitmap(Bitmap bitmap) {
-        if (this.mImage != null) {
-            this.mImage.recycle();
-        }
+        Bitmap previous = this.mImage;
         this.mImage = bitmap;
         this.mImageView.setImageBitmap(bitmap);
+        if (previous != null && previous != bitmap) {
+            BitmapPool.release(previous);
+        }
+    }
+
+    /** Render time of the low-resolution first pass in ms, or -1 before it has finished. */
+    public long getPreviewRenderTime() {
+        return this.mPreviewRenderTime;
+    }
+
+    /** Render time of the full-resolution pass in ms, or -1 before it has finished. */
+    public long getSharpRenderTime() {
+        return this.mSharpRenderTime;
     }
 
     public RectF getImageContentRect() {
@@ -453,35 +492,76 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     }
 
     private void initRenderingAsync() {
-        if (this.mImage == null && this.mImageView.getWidth() > 0 && (this.mInitialRenderingTask == null || this.mInitialRenderingTask.getStatus() == AsyncTask.Status.FINISHED)) {
-            this.mInitialRenderingTask = new PDSRenderPageAsyncTask(this.mContext, this.mPage, new SizeF((float) this.mImageView.getWidth(), (float) this.mImageView.getHeight()), 1.0f, false, false, new PDSRenderPageAsyncTask.OnPostExecuteListener() {
-                public void onPostExecute(PDSRenderPageAsyncTask fASRenderPageAsyncTask, Bitmap bitmap) {
-                    if (bitmap != null && PDSPageViewer.this.mScaleFactor == 1.0f && fASRenderPageAsyncTask.getPage() == PDSPageViewer.this.mPage) {
-                        int visibleWindowHeight = PDSPageViewer.this.getDocumentViewer().getVisibleWindowHeight();
-                        if (visibleWindowHeight > 0) {
-                            PDSPageViewer.this.mScrollView.setLayoutParams(new LayoutParams(-1, visibleWindowHeight));
-                        }
-                        PDSPageViewer.this.mInitialImageSize = fASRenderPageAsyncTask.getBitmapSize();
-                        PDSPageViewer.this.computeImageContentRect();
-                        PDSPageViewer.this.computeCoordinateConversionMatrices();
-                       /* if (PDSPageViewer.this.mPage.getNumber() == 0) {
-                            FASDocStore instance = FASDocStore.getInstance(FASPageViewer.this.mContext);
-                            String uuid = FASPageViewer.this.getDocumentViewer().getDocument().getUuid();
-                            if (!instance.thumbnailExists(uuid)) {
-                                instance.updateThumbnail(uuid);
-                            }
-                        }*/
+        if (this.mImage == null && this.mImageView.getWidth() > 0 && (this.mInitialRenderingTask == null || this.mInitialRenderingTask.isFinished())) {
+            PDSRenderScheduler.Priority priority = this.mPage.getNumber() == this.activity.getCurrentPage() ? PDSRenderScheduler.Priority.VISIBLE : PDSRenderScheduler.Priority.NEIGHBOR;
+            SizeF imageViewSize = new SizeF((float) this.mImageView.getWidth(), (float) this.mImageView.getHeight());
+            // Swiping back to a page whose viewer was just recycled reuses its bitmap
+            PDSPageViewerPool pool = this.activity.getPageViewerPool();
+            PDSPageViewerPool.RenderedPage kept = pool != null ? pool.takeRendered(this.mPage, imageViewSize) : null;
+            if (kept != null) {
+                showRenderedPage(kept.bitmap, kept.bitmapSize);
+                this.mRenderingComplete = true;
+                return;
+            }
+            int generation = this.mRenderToken.next();
+            // Coarse first pass so the page shows up while the sharp pass is still rendering
+            this.mPreviewRenderingTask = new PDSRenderPageTask(this.mContext, this.mPage, imageViewSize, PREVIEW_SCALE, false, false, priority, this.mRenderToken, generation, new PDSRenderPageTask.OnPostExecuteListener() {
+                public void onPostExecute(PDSRenderPageTask fASRenderPageAsyncTask, Bitmap bitmap) {
+                    PDSPageViewer.this.mPreviewRenderTime = fASRenderPageAsyncTask.getRenderTime();
+                    Log.d(TAG, "page " + PDSPageViewer.this.mPage.getNumber() + " preview pass: queued " + fASRenderPageAsyncTask.getQueueTime() + " ms, rendered " + PDSPageViewer.this.mPreviewRenderTime + " ms");
+                    if (bitmap != null && fASRenderPageAsyncTask == PDSPageViewer.this.mPreviewRenderingTask && !PDSPageViewer.this.mRenderingComplete && PDSPageViewer.this.mImage == null) {
                         PDSPageViewer.this.setImageBitmap(bitmap);
-                        PDSPageViewer.this.renderElements();
+                        PDSPageViewer.this.mImageSharp = false;
                         PDSPageViewer.this.mProgressView.setVisibility(INVISIBLE);
-                        PDSPageViewer.this.attachListeners();
                     } else if (bitmap != null) {
-                        bitmap.recycle();
+                        BitmapPool.release(bitmap);
+                    }
+                }
+            });
+            this.mInitialRenderingTask = new PDSRenderPageTask(this.mContext, this.mPage, imageViewSize, 1.0f, false, false, priority, this.mRenderToken, generation, new PDSRenderPageTask.OnPostExecuteListener() {
+                public void onPostExecute(PDSRenderPageTask fASRenderPageAsyncTask, Bitmap bitmap) {
+                    // A result for a page this viewer was unbound from
+                    if (fASRenderPageAsyncTask != PDSPageViewer.this.mInitialRenderingTask) {
+                        BitmapPool.release(bitmap);
+                        return;
+                    }
+                    PDSPageViewer.this.mSharpRenderTime = fASRenderPageAsyncTask.getRenderTime();
+                    Log.d(TAG, "page " + PDSPageViewer.this.mPage.getNumber() + " sharp pass: queued " + fASRenderPageAsyncTask.getQueueTime() + " ms, rendered " + PDSPageViewer.this.mSharpRenderTime + " ms");
+                    // Also shown while zoomed, e.g. after a trim; the tiles are drawn on top of it
+                    if (bitmap != null) {
+                        PDSPageViewer.this.showRenderedPage(bitmap, fASRenderPageAsyncTask.getBitmapSize());
+                        if (PDSPageViewer.this.mScaleFactor != 1.0f) {
+                            PDSPageViewer.this.updateImageFoScale();
+                        }
                     }
                     PDSPageViewer.this.mRenderingComplete = true;
                 }
             });
-            this.mInitialRenderingTask.execute(new Void[0]);
+            this.mRenderingComplete = false;
+            this.mPreviewRenderingTask.execute();
+            this.mInitialRenderingTask.execute();
+        }
+    }
+
+    private void showRenderedPage(Bitmap bitmap, SizeF bitmapSize) {
+        int visibleWindowHeight = getDocumentViewer().getVisibleWindowHeight();
+        if (visibleWindowHeight > 0) {
+            this.mScrollView.setLayoutParams(new LayoutParams(-1, visibleWindowHeight));
+        }
+        this.mInitialImageSize = bitmapSize;
+        computeImageContentRect();
+        computeCoordinateConversionMatrices();
+        setImageBitmap(bitmap);
+        this.mImageSharp = true;
+        this.mProgressView.setVisibility(INVISIBLE);
+        // A page trimmed under memory pressure keeps its elements
+        if (!this.mElementsRendered) {
+            renderElements();
+            this.mElementsRendered = true;
+        }
+        if (!this.mListenersAttached) {
+            attachListeners();
+            this.mListenersAttached = true;
         }
     }
 
@@ -524,32 +604,12 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     }
 
 
-    private synchronized void updateImageFoScale() {
-        if (this.mScaleFactor != this.mBitmapScale) {
-            if (this.mRenderPageTask != null) {
-                this.mRenderPageTask.cancel(false);
-                if (this.mRenderPageTask.getStatus() == AsyncTask.Status.RUNNING) {
-                    this.mRenderPageTaskPending = true;
-                    return;
-                }
-            }
-            this.mRenderPageTask = new PDSRenderPageAsyncTask(this.mContext, this.mPage, new SizeF((float) this.mImageView.getWidth(), (float) this.mImageView.getHeight()), this.mScaleFactor, false, false, new PDSRenderPageAsyncTask.OnPostExecuteListener() {
-                public void onPostExecute(PDSRenderPageAsyncTask fASRenderPageAsyncTask, Bitmap bitmap) {
-                    if (bitmap != null && PDSPageViewer.this.mScaleFactor == fASRenderPageAsyncTask.getScale()) {
-                        PDSPageViewer.this.setImageBitmap(bitmap);
-                        PDSPageViewer.this.mBitmapScale = PDSPageViewer.this.mScaleFactor;
-                    } else if (bitmap != null) {
-                        bitmap.recycle();
-                    }
-                    if (PDSPageViewer.this.mRenderPageTaskPending) {
-                        PDSPageViewer.this.mRenderPageTask = null;
-                        PDSPageViewer.this.mRenderPageTaskPending = false;
-                        PDSPageViewer.this.updateImageFoScale();
-                    }
-                }
-            });
-            this.mRenderPageTask.execute(new Void[0]);
+    private void updateImageFoScale() {
+        removeCallbacks(this.mTileUpdateRunnable);
+        if (this.mImageContentRect == null) {
+            return;
         }
+        this.mTileView.updateTiles(getImageContentRect(), getVisibleRect(), this.mScaleFactor, this.mPage.getPageSize());
     }
 
     public RectF getVisibleRect() {
@@ -557,9 +617,123 @@ public class PDSPageViewer extends FrameLayout implements Observer {
     }
 
     public void cancelRendering() {
+        if (mPreviewRenderingTask != null) {
+            mPreviewRenderingTask.cancel();
+        }
         if (mInitialRenderingTask != null) {
-            mInitialRenderingTask.cancel(false);
+            mInitialRenderingTask.cancel();
+        }
+        mRenderToken.next();
+        removeCallbacks(this.mTileUpdateRunnable);
+        mTileView.clear();
+        if (this.mImage != null) {
+            this.mImageView.setImageDrawable(null);
+            BitmapPool.release(this.mImage);
+            this.mImage = null;
+        }
+        this.mImageSharp = false;
+    }
+
+    /** Shows {@code page} in a viewer taken from {@link PDSPageViewerPool}. */
+    void bind(PDSPDFPage page) {
+        this.mPage = page;
+        this.mPage.setPageViewer(this);
+        this.mTileView.setPage(page);
+        if (this.mImageView.getWidth() > 0) {
+            initRenderingAsync();
+        }
+    }
+
+    /**
+     * Detaches the viewer from its page before it goes back to the pool. A finished page
+     * bitmap is handed to the pool rather than released, in case the user swipes back.
+     */
+    void unbind(PDSPageViewerPool pool) {
+        if (this.mImage != null && this.mImageSharp && this.mInitialImageSize != null) {
+            pool.putRendered(this.mPage, this.mImage, this.mInitialImageSize, new SizeF((float) this.mImageView.getWidth(), (float) this.mImageView.getHeight()));
+            this.mImageView.setImageDrawable(null);
+            this.mImage = null;
+        }
+        cancelRendering();
+        this.mPreviewRenderingTask = null;
+        this.mInitialRenderingTask = null;
+        this.mScroller.forceFinished(true);
+        hideElementPropMenu();
+        hideElementCreationMenu();
+        // Element, container and drag shadow views all belong to the old page
+        for (int i = this.mPageView.getChildCount() - 1; i >= 0; i--) {
+            View child = this.mPageView.getChildAt(i);
+            if (child != this.mImageView && child != this.mTileView) {
+                this.mPageView.removeViewAt(i);
+            }
+        }
+        this.mDragShadowView = null;
+        this.mLastFocusedElementViewer = null;
+        if (this.mPage.getPageViewer() == this) {
+            this.mPage.setPageViewer(null);
+        }
+        this.mImageContentRect = null;
+        this.mToPDFCoordinatesMatrix = null;
+        this.mToViewCoordinatesMatrix = null;
+        this.mInitialImageSize = null;
+        this.mRenderingComplete = false;
+        this.mElementsRendered = false;
+        this.mResizeInOperation = false;
+        this.mPreviewRenderTime = -1;
+        this.mSharpRenderTime = -1;
+        resetScale();
+        this.mProgressView.setVisibility(VISIBLE);
+    }
+
+    /** Renders the page again if its bitmap was dropped by {@link #trimToFraction(float)}. */
+    public void ensureRendered() {
+        if (this.mImage == null && this.mRenderingComplete) {
+            initRenderingAsync();
+        }
+    }
+
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        CacheRegistry.register(this);
+        PageColorSettings.addListener(this);
+        onPageColorModeChanged(PageColorSettings.getMode());
+    }
+
+    protected void onDetachedFromWindow() {
+        PageColorSettings.removeListener(this);
+        CacheRegistry.unregister(this);
+        super.onDetachedFromWindow();
+    }
+
+    // Applied as a filter on the views, so the page bitmap and cached tiles are kept as they are
+    public void onPageColorModeChanged(PageColorMode mode) {
+        this.mImageView.setColorFilter(mode.getColorFilter());
+        this.mTileView.setColorFilter(mode.getColorFilter());
+    }
+
+    public String getCacheName() {
+        return "Signer page p" + (this.mPage.getNumber() + 1);
+    }
+
+    public CachePriority getCachePriority() {
+        return CachePriority.HIGH;
+    }
+
+    public long currentBytes() {
+        return this.mImage != null ? this.mImage.getAllocationByteCount() : 0;
+    }
+
+    public long maxBytes() {
+        return currentBytes();
+    }
+
+    // Only offscreen pages give up their bitmap; the current page is rendered again on selection
+    public void trimToFraction(float fraction) {
+        if (fraction >= 1.0f || this.mImage == null || !this.mRenderingComplete || this.mPage.getNumber() == this.activity.getCurrentPage()) {
+            return;
         }
+        cancelRendering();
+        this.mProgressView.setVisibility(VISIBLE);
     }
 
     public void computeScroll() {
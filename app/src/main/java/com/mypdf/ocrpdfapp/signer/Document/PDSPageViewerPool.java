@@ -0,0 +1,110 @@
+package com.mypdf.ocrpdfapp.signer.Document;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+import android.util.SizeF;
+import android.view.ViewGroup;
+
+import com.mypdf.ocrpdfapp.render.BitmapPool;
+import com.mypdf.ocrpdfapp.render.CachePriority;
+import com.mypdf.ocrpdfapp.render.CacheRegistry;
+import com.mypdf.ocrpdfapp.render.TrimmableCache;
+import com.mypdf.ocrpdfapp.signer.DigitalSignatureActivity;
+import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFPage;
+
+import java.util.ArrayDeque;
+
+/**
+ * Reuses {@link PDSPageViewer}s across the pager's fragments. A fragment whose view is
+ * destroyed hands its viewer back here and the next page created rebinds it, so a swipe
+ * no longer inflates layouts, gesture detectors and a tile view.
+ *
+ * The last rendered bitmaps of unbound pages are kept for a while as well, so swiping
+ * back to a page shows it immediately instead of rendering it again.
+ */
+public class PDSPageViewerPool {
+    private static final int MAX_IDLE_VIEWERS = 2;
+
+    private final DigitalSignatureActivity mActivity;
+    private final ArrayDeque<PDSPageViewer> mIdle = new ArrayDeque<>();
+    private final LruCache<PDSPDFPage, RenderedPage> mRecentPages;
+    // The registry holds caches weakly, so the adapter is kept as long as the pool
+    private final TrimmableCache mRecentPagesCache;
+
+    static class RenderedPage {
+        final Bitmap bitmap;
+        final SizeF bitmapSize;
+        final SizeF viewSize;
+        boolean taken = false;
+
+        RenderedPage(Bitmap bitmap, SizeF bitmapSize, SizeF viewSize) {
+            this.bitmap = bitmap;
+            this.bitmapSize = bitmapSize;
+            this.viewSize = viewSize;
+        }
+    }
+
+    public PDSPageViewerPool(DigitalSignatureActivity activity) {
+        this.mActivity = activity;
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        this.mRecentPages = new LruCache<PDSPDFPage, RenderedPage>(maxBytes) {
+            protected int sizeOf(PDSPDFPage key, RenderedPage value) {
+                return value.bitmap.getAllocationByteCount();
+            }
+
+            protected void entryRemoved(boolean evicted, PDSPDFPage key, RenderedPage oldValue, RenderedPage newValue) {
+                if (oldValue != newValue && !oldValue.taken) {
+                    BitmapPool.release(oldValue.bitmap);
+                }
+            }
+        };
+        this.mRecentPagesCache = CacheRegistry.INSTANCE.lruCache("Signer recent pages", CachePriority.NORMAL, this.mRecentPages, 1);
+        CacheRegistry.register(this.mRecentPagesCache);
+    }
+
+    public PDSPageViewer acquire(PDSPDFPage page) {
+        PDSPageViewer viewer = this.mIdle.pollFirst();
+        if (viewer == null) {
+            return new PDSPageViewer(this.mActivity, this.mActivity, page);
+        }
+        viewer.bind(page);
+        return viewer;
+    }
+
+    public void release(PDSPageViewer viewer) {
+        if (viewer.getParent() instanceof ViewGroup) {
+            ((ViewGroup) viewer.getParent()).removeView(viewer);
+        }
+        viewer.unbind(this);
+        if (this.mIdle.size() < MAX_IDLE_VIEWERS && !this.mIdle.contains(viewer)) {
+            this.mIdle.addLast(viewer);
+        }
+    }
+
+    /** Keeps the bitmap a page was showing when its viewer was unbound. */
+    void putRendered(PDSPDFPage page, Bitmap bitmap, SizeF bitmapSize, SizeF viewSize) {
+        this.mRecentPages.put(page, new RenderedPage(bitmap, bitmapSize, viewSize));
+    }
+
+    /** Hands back a kept bitmap for {@code page} if it was rendered for the same view size. */
+    RenderedPage takeRendered(PDSPDFPage page, SizeF viewSize) {
+        RenderedPage rendered = this.mRecentPages.get(page);
+        if (rendered == null) {
+            return null;
+        }
+        if (!rendered.viewSize.equals(viewSize)) {
+            this.mRecentPages.remove(page);
+            return null;
+        }
+        // The viewer owns the bitmap from here, so eviction must not release it
+        rendered.taken = true;
+        this.mRecentPages.remove(page);
+        return rendered;
+    }
+
+    public void clear() {
+        this.mIdle.clear();
+        this.mRecentPages.evictAll();
+        CacheRegistry.unregister(this.mRecentPagesCache);
+    }
+}
@@ -0,0 +1,248 @@
+package com.mypdf.ocrpdfapp.signer.Document;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SizeF;
+
+import com.mypdf.ocrpdfapp.render.BitmapPool;
+import com.mypdf.ocrpdfapp.render.BitmapUse;
+import com.mypdf.ocrpdfapp.render.PageDiskCache;
+import com.mypdf.ocrpdfapp.render.PageGeometryTable;
+import com.mypdf.ocrpdfapp.render.PageImageService;
+import com.mypdf.ocrpdfapp.render.PageKey;
+import com.mypdf.ocrpdfapp.render.RenderConfigPolicy;
+import com.mypdf.ocrpdfapp.render.RenderMetrics;
+import com.mypdf.ocrpdfapp.render.RenderStage;
+import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFPage;
+
+public class PDSRenderPageTask extends PDSRenderScheduler.Job {
+    private static final int MAX_BITMAP_SIZE = 3072;
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private SizeF mBitmapSize = null;
+    private Context mContext = null;
+    private boolean mForPrint = false;
+    private SizeF mImageViewSize = null;
+    private boolean mIncludePageElements = false;
+    private OnPostExecuteListener mListener = null;
+    private final PDSPDFPage mPage;
+    private float mScale = 1.0f;
+    private final PDSRenderScheduler.Token mToken;
+    private final int mGeneration;
+    private volatile boolean mCancelled = false;
+    private volatile boolean mFinished = false;
+    private long mSubmitTime = 0;
+    private volatile long mQueueTime = 0;
+    private volatile long mRenderTime = 0;
+
+    public interface OnPostExecuteListener {
+        void onPostExecute(PDSRenderPageTask fASRenderPageTask, Bitmap bitmap);
+    }
+
+    PDSRenderPageTask(Context context, PDSPDFPage fASPage, SizeF sizeF, float f, boolean z, boolean z2, PDSRenderScheduler.Priority priority, PDSRenderScheduler.Token token, int generation, OnPostExecuteListener onPostExecuteListener) {
+        super(priority);
+        this.mContext = context;
+        this.mPage = fASPage;
+        this.mImageViewSize = sizeF;
+        this.mScale = f;
+        this.mIncludePageElements = z;
+        this.mForPrint = z2;
+        this.mToken = token;
+        this.mGeneration = generation;
+        this.mListener = onPostExecuteListener;
+    }
+
+    public void execute() {
+        this.mSubmitTime = SystemClock.uptimeMillis();
+        PDSRenderScheduler.getInstance().submit(this);
+    }
+
+    public void cancel() {
+        this.mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isStale();
+    }
+
+    public boolean isFinished() {
+        return this.mFinished;
+    }
+
+    protected boolean isStale() {
+        return this.mCancelled || !this.mToken.isCurrent(this.mGeneration);
+    }
+
+    protected void render() {
+        long start = SystemClock.uptimeMillis();
+        this.mQueueTime = start - this.mSubmitTime;
+        RenderMetrics.recordDuration(RenderStage.QUEUE_WAIT, this.mQueueTime * 1000000L);
+        Bitmap bitmap = doInBackground();
+        this.mRenderTime = SystemClock.uptimeMillis() - start;
+        if (bitmap != null) {
+            RenderMetrics.recordDuration(RenderStage.PAGE_TOTAL, (this.mQueueTime + this.mRenderTime) * 1000000L);
+        }
+        postResult(bitmap);
+    }
+
+    protected void onDropped() {
+        postResult(null);
+    }
+
+    private Bitmap doInBackground() {
+        if (isCancelled() || this.mImageViewSize.getWidth() <= 0.0f) {
+            return null;
+        }
+        this.mBitmapSize = computePageBitmapSize();
+        if (isCancelled()) {
+            return null;
+        }
+        float width = this.mBitmapSize.getWidth() * this.mScale;
+        float height = this.mBitmapSize.getHeight() * this.mScale;
+        float f = width / height;
+        if (width > 3072.0f && width > height) {
+            height = 3072.0f / f;
+            width = 3072.0f;
+        } else if (height > 3072.0f && height > width) {
+            width = f * 3072.0f;
+            height = 3072.0f;
+        }
+        PageKey diskKey = diskKey(width, height);
+        if (diskKey != null) {
+            // Sized by the key's quarter-step scale, like the viewer's renders of the page
+            SizeF pageSize = this.mPage.getPageSize();
+            width = Math.round(pageSize.getWidth()) * diskKey.getScale();
+            height = Math.round(pageSize.getHeight()) * diskKey.getScale();
+            // A page another screen already rendered as large or larger is only scaled down
+            Bitmap cached = PageImageService.copyFromCache(diskKey.getFingerprint(), diskKey.getPageIndex(), diskKey.getScale(), Math.round(width), Math.round(height), bitmapUse());
+            if (cached != null) {
+                if (!isCancelled()) {
+                    return cached;
+                }
+                BitmapPool.release(cached);
+                return null;
+            }
+            long diskStart = RenderMetrics.now();
+            Bitmap stored = PageDiskCache.get(diskKey);
+            RenderMetrics.recordLookup("page disk", stored != null);
+            if (stored != null) {
+                RenderMetrics.record(RenderStage.DISK_READ, diskStart);
+                if (!isCancelled()) {
+                    return RenderConfigPolicy.finish(stored, bitmapUse());
+                }
+                BitmapPool.release(stored);
+                return null;
+            }
+        }
+        try {
+            Bitmap createBitmap = BitmapPool.acquire(Math.round(width), Math.round(height), Config.ARGB_8888);
+            if (isCancelled()) {
+                BitmapPool.release(createBitmap);
+                return null;
+            }
+            createBitmap.setHasAlpha(false);
+            createBitmap.eraseColor(-1);
+            if (isCancelled()) {
+                BitmapPool.release(createBitmap);
+                return null;
+            }
+            this.mPage.renderPage(this.mContext, createBitmap, this.mIncludePageElements, this.mForPrint);
+            if (!isCancelled()) {
+                if (diskKey != null) {
+                    PageDiskCache.put(diskKey, createBitmap);
+                }
+                return RenderConfigPolicy.finish(createBitmap, bitmapUse());
+            }
+            BitmapPool.release(createBitmap);
+            return null;
+        } catch (OutOfMemoryError unused) {
+            return null;
+        }
+    }
+
+    // Renders with elements or for print are drawn into later and must stay mutable
+    private BitmapUse bitmapUse() {
+        if (this.mIncludePageElements || this.mForPrint) {
+            return BitmapUse.MUTABLE;
+        }
+        return this.mScale < 1.0f ? BitmapUse.PREVIEW : BitmapUse.DISPLAY_PAGE;
+    }
+
+    // Only plain page renders are shared; pages with elements or for print differ per session
+    private PageKey diskKey(float bitmapWidth, float bitmapHeight) {
+        String fingerprint = this.mPage.getDocument().getFingerprint();
+        if (this.mIncludePageElements || this.mForPrint || fingerprint == null) {
+            return null;
+        }
+        SizeF pageSize = this.mPage.getPageSize();
+        float scale = PageGeometryTable.Companion.fitScale(Math.round(pageSize.getWidth()), Math.round(pageSize.getHeight()), Math.round(bitmapWidth), Math.round(bitmapHeight), PageGeometryTable.MAX_PAGE_BYTES);
+        return new PageKey(fingerprint, this.mPage.getNumber(), scale);
+    }
+
+    private void postResult(final Bitmap bitmap) {
+        sMainHandler.post(new Runnable() {
+            public void run() {
+                PDSRenderPageTask.this.mFinished = true;
+                if (bitmap != null && PDSRenderPageTask.this.isCancelled()) {
+                    BitmapPool.release(bitmap);
+                    PDSRenderPageTask.this.onPostExecute(null);
+                } else {
+                    PDSRenderPageTask.this.onPostExecute(bitmap);
+                }
+            }
+        });
+    }
+
+    private void onPostExecute(Bitmap bitmap) {
+        if (this.mListener != null) {
+            this.mListener.onPostExecute(this, bitmap);
+        }
+    }
+
+    public SizeF getBitmapSize() {
+        return this.mBitmapSize;
+    }
+
+    public float getScale() {
+        return this.mScale;
+    }
+
+    /** Milliseconds the job waited in the scheduler queue before it started. */
+    public long getQueueTime() {
+        return this.mQueueTime;
+    }
+
+    /** Milliseconds spent allocating and rendering the bitmap. */
+    public long getRenderTime() {
+        return this.mRenderTime;
+    }
+
+    public PDSPDFPage getPage() {
+        return this.mPage;
+    }
+
+    private SizeF computePageBitmapSize() {
+        float width;
+        SizeF pageSize = this.mPage.getPageSize();
+        float width2 = pageSize.getWidth() / pageSize.getHeight();
+        if (width2 > this.mImageViewSize.getWidth() / this.mImageViewSize.getHeight()) {
+            width = this.mImageViewSize.getWidth();
+            if (width > 3072.0f) {
+                width = 3072.0f;
+            }
+            width2 = (float) Math.round(width / width2);
+        } else {
+            width = this.mImageViewSize.getHeight();
+            if (width > 3072.0f) {
+                width = 3072.0f;
+            }
+            float f = width2 * width;
+            width2 = width;
+            width = f;
+        }
+        return new SizeF(width, width2);
+    }
+}
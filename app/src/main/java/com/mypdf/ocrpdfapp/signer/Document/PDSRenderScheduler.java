@@ -0,0 +1,120 @@
+package com.mypdf.ocrpdfapp.signer.Document;
+
+import android.os.Process;
+
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dedicated executor for page renders in the signing flow. Jobs run in priority order
+ * (visible page, then zoom refinement, then neighbouring pages) and never share a thread
+ * with saves or network calls the way the AsyncTask serial executor did. A job whose
+ * generation token has moved on is dropped before it starts.
+ */
+public final class PDSRenderScheduler {
+    public enum Priority {
+        VISIBLE,
+        REFINE,
+        NEIGHBOR
+    }
+
+    private static final int THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final PDSRenderScheduler sInstance = new PDSRenderScheduler();
+    private static final ThreadLocal<Priority> sRunningPriority = new ThreadLocal<>();
+
+    private final AtomicLong mSequence = new AtomicLong();
+    private final ThreadPoolExecutor mExecutor;
+
+    private PDSRenderScheduler() {
+        PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>(16, new Comparator<Runnable>() {
+            public int compare(Runnable lhs, Runnable rhs) {
+                Job left = (Job) lhs;
+                Job right = (Job) rhs;
+                int byPriority = left.mPriority.compareTo(right.mPriority);
+                return byPriority != 0 ? byPriority : Long.compare(left.mSequence, right.mSequence);
+            }
+        });
+        this.mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS, queue, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                        runnable.run();
+                    }
+                }, "pds-render-" + this.mCount.incrementAndGet());
+            }
+        });
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static PDSRenderScheduler getInstance() {
+        return sInstance;
+    }
+
+    public void submit(Job job) {
+        job.mSequence = this.mSequence.incrementAndGet();
+        this.mExecutor.execute(job);
+    }
+
+    /**
+     * Priority of the job running on this thread. Callers outside the scheduler, such as the
+     * UI thread asking for a page size, are treated as {@link Priority#VISIBLE}.
+     */
+    public static Priority currentPriority() {
+        Priority priority = sRunningPriority.get();
+        return priority != null ? priority : Priority.VISIBLE;
+    }
+
+    /**
+     * Per-viewer generation counter. Taking a new generation makes every job submitted
+     * under an older one stale.
+     */
+    public static final class Token {
+        private final AtomicInteger mGeneration = new AtomicInteger();
+
+        public int next() {
+            return this.mGeneration.incrementAndGet();
+        }
+
+        public boolean isCurrent(int generation) {
+            return this.mGeneration.get() == generation;
+        }
+    }
+
+    public static abstract class Job implements Runnable {
+        private final Priority mPriority;
+        private long mSequence;
+
+        protected Job(Priority priority) {
+            this.mPriority = priority;
+        }
+
+        protected abstract boolean isStale();
+
+        protected abstract void render();
+
+        /** Called on the render thread instead of {@link #render()} when the job went stale in the queue. */
+        protected void onDropped() {
+        }
+
+        public final void run() {
+            if (isStale()) {
+                onDropped();
+                return;
+            }
+            sRunningPriority.set(this.mPriority);
+            try {
+                render();
+            } finally {
+                sRunningPriority.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.mypdf.ocrpdfapp.signer.Document;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.util.SizeF;
+import android.view.View;
+
+import com.mypdf.ocrpdfapp.render.BitmapPool;
+import com.mypdf.ocrpdfapp.render.CachePriority;
+import com.mypdf.ocrpdfapp.render.CacheRegistry;
+import com.mypdf.ocrpdfapp.render.TrimmableCache;
+import com.mypdf.ocrpdfapp.signer.PDF.PDSPDFPage;
+
+import java.util.HashSet;
+
+/**
+ * Draws sharp fixed-size tiles over the page bitmap while zoomed in. Only tiles that
+ * intersect the visible rect are rendered, each through PdfRenderer with a transform
+ * matrix, and tiles are cached per zoom level so memory stays bounded at any zoom.
+ */
+public class PDSTileView extends View implements TrimmableCache {
+    private static final int TILE_SIZE = 256;
+    private static final int CACHE_BYTES = 24 * 1024 * 1024;
+    private static final float MIN_TILE_ZOOM = 1.25f;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final HashSet<Long> mPending = new HashSet<>();
+    private final RectF mDrawRect = new RectF();
+    private final LruCache<Long, Bitmap> mTileCache = new LruCache<Long, Bitmap>(CACHE_BYTES) {
+        protected int sizeOf(Long key, Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+        }
+
+        protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+            if (oldValue != newValue) {
+                BitmapPool.release(oldValue);
+            }
+        }
+    };
+    private PDSPDFPage mPage;
+    private RectF mContentRect = null;
+    private RectF mVisibleRect = null;
+    private SizeF mPageSize = null;
+    private float mLevel = 0.0f;
+    private volatile int mGeneration = 0;
+
+    public PDSTileView(Context context, PDSPDFPage page) {
+        super(context);
+        this.mPage = page;
+    }
+
+    /**
+     * Requests the tiles covering {@code visibleRect} (page view coordinates) at {@code zoom}.
+     * Tiles already queued for an older viewport are dropped before they start.
+     */
+    public void updateTiles(RectF contentRect, RectF visibleRect, float zoom, SizeF pageSize) {
+        float level = quantizeZoom(zoom);
+        this.mGeneration++;
+        this.mPending.clear();
+        if (level < MIN_TILE_ZOOM || contentRect == null || pageSize == null) {
+            this.mLevel = 0.0f;
+            this.mTileCache.evictAll();
+            invalidate();
+            return;
+        }
+        this.mLevel = level;
+        this.mContentRect = new RectF(contentRect);
+        this.mVisibleRect = new RectF(visibleRect);
+        this.mPageSize = pageSize;
+
+        RectF area = new RectF(visibleRect);
+        if (!area.intersect(contentRect)) {
+            invalidate();
+            return;
+        }
+        int firstX = (int) Math.floor((area.left - contentRect.left) * level / TILE_SIZE);
+        int lastX = (int) Math.floor((area.right - contentRect.left) * level / TILE_SIZE);
+        int firstY = (int) Math.floor((area.top - contentRect.top) * level / TILE_SIZE);
+        int lastY = (int) Math.floor((area.bottom - contentRect.top) * level / TILE_SIZE);
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                long key = tileKey(level, tx, ty);
+                if (this.mTileCache.get(key) == null && !this.mPending.contains(key)) {
+                    this.mPending.add(key);
+                    renderTileAsync(key, level, tx, ty, this.mGeneration);
+                }
+            }
+        }
+        invalidate();
+    }
+
+    /** Moves the drawn window without requesting new tiles; cached tiles are drawn as-is. */
+    public void setVisibleRect(RectF visibleRect) {
+        if (this.mLevel != 0.0f) {
+            this.mVisibleRect = visibleRect;
+            invalidate();
+        }
+    }
+
+    public void cancel() {
+        this.mGeneration++;
+        this.mPending.clear();
+    }
+
+    public void clear() {
+        cancel();
+        this.mLevel = 0.0f;
+        this.mTileCache.evictAll();
+        invalidate();
+    }
+
+    /** Tints the tiles while drawing; null draws them as rendered. */
+    public void setColorFilter(ColorFilter filter) {
+        this.mPaint.setColorFilter(filter);
+        invalidate();
+    }
+
+    /** Switches to another page when the owning viewer is recycled. */
+    public void setPage(PDSPDFPage page) {
+        clear();
+        this.mPage = page;
+        this.mContentRect = null;
+        this.mVisibleRect = null;
+        this.mPageSize = null;
+    }
+
+    private void renderTileAsync(final long key, final float level, final int tx, final int ty, final int generation) {
+        final RectF contentRect = new RectF(this.mContentRect);
+        final SizeF pageSize = this.mPageSize;
+        final PDSPDFPage page = this.mPage;
+        PDSRenderScheduler.getInstance().submit(new PDSRenderScheduler.Job(PDSRenderScheduler.Priority.REFINE) {
+            protected boolean isStale() {
+                return generation != PDSTileView.this.mGeneration;
+            }
+
+            protected void onDropped() {
+                PDSTileView.this.mMainHandler.post(new Runnable() {
+                    public void run() {
+                        PDSTileView.this.mPending.remove(key);
+                    }
+                });
+            }
+
+            protected void render() {
+                Bitmap bitmap;
+                try {
+                    bitmap = BitmapPool.acquire(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+                } catch (OutOfMemoryError unused) {
+                    return;
+                }
+                bitmap.eraseColor(Color.WHITE);
+                float pageScale = (contentRect.width() * level) / pageSize.getWidth();
+                Matrix matrix = new Matrix();
+                matrix.postScale(pageScale, pageScale);
+                matrix.postTranslate((float) (-tx * TILE_SIZE), (float) (-ty * TILE_SIZE));
+                page.renderTile(bitmap, matrix);
+                final Bitmap tile = bitmap;
+                PDSTileView.this.mMainHandler.post(new Runnable() {
+                    public void run() {
+                        PDSTileView.this.mPending.remove(key);
+                        if (level == PDSTileView.this.mLevel && page == PDSTileView.this.mPage) {
+                            PDSTileView.this.mTileCache.put(key, tile);
+                            PDSTileView.this.invalidate();
+                        } else {
+                            BitmapPool.release(tile);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (this.mLevel == 0.0f || this.mContentRect == null || this.mVisibleRect == null) {
+            return;
+        }
+        float tileExtent = TILE_SIZE / this.mLevel;
+        RectF area = new RectF(this.mVisibleRect);
+        if (!area.intersect(this.mContentRect)) {
+            return;
+        }
+        int firstX = (int) Math.floor((area.left - this.mContentRect.left) / tileExtent);
+        int lastX = (int) Math.floor((area.right - this.mContentRect.left) / tileExtent);
+        int firstY = (int) Math.floor((area.top - this.mContentRect.top) / tileExtent);
+        int lastY = (int) Math.floor((area.bottom - this.mContentRect.top) / tileExtent);
+        canvas.save();
+        canvas.clipRect(this.mContentRect);
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                Bitmap tile = this.mTileCache.get(tileKey(this.mLevel, tx, ty));
+                if (tile != null && !tile.isRecycled()) {
+                    float left = this.mContentRect.left + (tx * tileExtent);
+                    float top = this.mContentRect.top + (ty * tileExtent);
+                    this.mDrawRect.set(left, top, left + tileExtent, top + tileExtent);
+                    canvas.drawBitmap(tile, null, this.mDrawRect, this.mPaint);
+                }
+            }
+        }
+        canvas.restore();
+    }
+
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        CacheRegistry.register(this);
+    }
+
+    protected void onDetachedFromWindow() {
+        CacheRegistry.unregister(this);
+        super.onDetachedFromWindow();
+    }
+
+    public String getCacheName() {
+        return "Signer tiles p" + (this.mPage.getNumber() + 1);
+    }
+
+    // Tiles are re-rendered on the next scroll, so they go before anything else
+    public CachePriority getCachePriority() {
+        return CachePriority.LOW;
+    }
+
+    public long currentBytes() {
+        return this.mTileCache.size();
+    }
+
+    public long maxBytes() {
+        return this.mTileCache.maxSize();
+    }
+
+    public void trimToFraction(float fraction) {
+        this.mTileCache.trimToSize((int) (this.mTileCache.maxSize() * fraction));
+        invalidate();
+    }
+
+    private static float quantizeZoom(float zoom) {
+        return Math.round(zoom * 2.0f) / 2.0f;
+    }
+
+    private static long tileKey(float level, int tx, int ty) {
+        return (((long) Math.round(level * 2.0f)) << 48) | (((long) tx & 0xFFFFFF) << 24) | ((long) ty & 0xFFFFFF);
+    }
+}
@@ -58,6 +58,11 @@ public class PDSViewPager extends VerticalViewPager {
         });
     }
 
+    /** Number of pages kept rendered on each side of the current one. */
+    public void setPrefetchDepth(int depth) {
+        setOffscreenPageLimit(Math.max(1, depth));
+    }
+
     public boolean onInterceptTouchEvent(MotionEvent motionEvent) {
         if (motionEvent.getActionMasked() == MotionEvent.ACTION_DOWN) {
             this.mDownReceieved = true;
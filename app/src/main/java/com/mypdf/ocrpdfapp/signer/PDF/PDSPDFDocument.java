@@ -5,6 +5,13 @@ import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
 
+import com.mypdf.ocrpdfapp.render.PageDiskCache;
+import com.mypdf.ocrpdfapp.render.PageGeometryStore;
+import com.mypdf.ocrpdfapp.render.PageGeometryTable;
+import com.mypdf.ocrpdfapp.render.RenderMetrics;
+import com.mypdf.ocrpdfapp.render.RenderStage;
+import com.mypdf.ocrpdfapp.signer.Document.PDSRenderScheduler;
+
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,9 +20,15 @@ import java.util.HashMap;
 
 public class PDSPDFDocument {
     private int mNumPages;
-    private static final transient Object sLockObject = new Object();
+    // PdfRenderer serializes pdfium calls process-wide on API 28+, and older releases don't
+    // support concurrent pdfium use at all, so extra renderers would only cost fds and memory
+    public static final int DEFAULT_RENDER_CONCURRENCY = 1;
+    private static final int GEOMETRY_CHUNK_PAGES = 32;
     private HashMap<Integer, PDSPDFPage> mPages;
-    private transient PdfRenderer mRenderer;
+    private transient PDSRendererPool mRendererPool;
+    private int mRenderConcurrency = DEFAULT_RENDER_CONCURRENCY;
+    private String mFingerprint = null;
+    private volatile PageGeometryTable mGeometry = null;
     Uri pdfDocument = null;
     public InputStream stream;
     Context context = null;
@@ -23,7 +36,7 @@ public class PDSPDFDocument {
     public PDSPDFDocument(Context context, Uri document) throws FileNotFoundException {
         this.mPages = null;
         this.mNumPages = -1;
-        this.mRenderer = null;
+        this.mRendererPool = null;
         this.mPages = new HashMap();
         this.pdfDocument = document;
         this.context = context;
@@ -32,19 +45,31 @@ public class PDSPDFDocument {
     }
 
     public void open() throws IOException {
+        long fdStart = RenderMetrics.now();
         ParcelFileDescriptor open = context.getContentResolver().openFileDescriptor(this.pdfDocument, "r");
+        RenderMetrics.record(RenderStage.FD_OPEN, fdStart);
         if (isValidPDF(open)) {
-            synchronized (sLockObject) {
-                try {
-                    this.mRenderer = new PdfRenderer(open);
-                    this.mNumPages = this.mRenderer.getPageCount();
-                } catch (Exception unused) {
-                    if (open != null) {
-                        open.close();
-                    }
-                    throw new IOException();
-                } catch (Throwable th) {
+            try {
+                long rendererStart = RenderMetrics.now();
+                this.mRendererPool = new PDSRendererPool(open, this.mRenderConcurrency);
+                RenderMetrics.record(RenderStage.RENDERER_INIT, rendererStart);
+                this.mNumPages = this.mRendererPool.getPageCount();
+                this.mFingerprint = PageDiskCache.fingerprintFor(this.context, this.pdfDocument);
+                PageGeometryTable stored = this.mFingerprint != null ? PageGeometryStore.get(this.mFingerprint) : null;
+                if (stored != null && stored.getPageCount() == this.mNumPages) {
+                    this.mGeometry = stored;
+                } else {
+                    loadGeometryAsync();
+                }
+            } catch (Exception unused) {
+                if (this.mRendererPool != null) {
+                    this.mRendererPool.close();
+                    this.mRendererPool = null;
+                }
+                if (open != null) {
+                    open.close();
                 }
+                throw new IOException();
             }
             return;
         }
@@ -53,9 +78,9 @@ public class PDSPDFDocument {
     }
 
     public void close() {
-        if (this.mRenderer != null) {
-            this.mRenderer.close();
-            this.mRenderer = null;
+        if (this.mRendererPool != null) {
+            this.mRendererPool.close();
+            this.mRendererPool = null;
         }
     }
 
@@ -72,12 +97,75 @@ public class PDSPDFDocument {
         return fASPDFPage2;
     }
 
-    public static Object getLockObject() {
-        return sLockObject;
+    /** Number of renderers the pool may open; takes effect on the next {@link #open()}. */
+    public void setRenderConcurrency(int concurrency) {
+        this.mRenderConcurrency = Math.max(1, concurrency);
     }
 
-    public PdfRenderer getRenderer() {
-        return this.mRenderer;
+    /** Sizes and rotation of every page, or null while the background pass is still running. */
+    public PageGeometryTable getGeometry() {
+        return this.mGeometry;
+    }
+
+    // Low-priority passes of GEOMETRY_CHUNK_PAGES pages each, so visible renders get the
+    // scheduler between chunks on long documents
+    private void loadGeometryAsync() {
+        int pageCount = this.mNumPages;
+        submitGeometryChunk(this.mRendererPool, new int[pageCount], new int[pageCount], 0);
+    }
+
+    private void submitGeometryChunk(final PDSRendererPool pool, final int[] widths, final int[] heights, final int start) {
+        PDSRenderScheduler.getInstance().submit(new PDSRenderScheduler.Job(PDSRenderScheduler.Priority.NEIGHBOR) {
+            protected boolean isStale() {
+                return PDSPDFDocument.this.mRendererPool != pool;
+            }
+
+            protected void render() {
+                int end = Math.min(start + GEOMETRY_CHUNK_PAGES, widths.length);
+                for (int i = start; i < end; i++) {
+                    PdfRenderer renderer = pool.acquire();
+                    if (renderer == null) {
+                        return;
+                    }
+                    try {
+                        PdfRenderer.Page page = renderer.openPage(i);
+                        try {
+                            widths[i] = page.getWidth();
+                            heights[i] = page.getHeight();
+                        } finally {
+                            page.close();
+                        }
+                    } finally {
+                        pool.release(renderer);
+                    }
+                }
+                if (end < widths.length) {
+                    submitGeometryChunk(pool, widths, heights, end);
+                } else {
+                    storeGeometry(widths, heights);
+                }
+            }
+        });
+    }
+
+    private void storeGeometry(int[] widths, int[] heights) {
+        int[] rotations = new int[widths.length];
+        try {
+            ParcelFileDescriptor descriptor = this.context.getContentResolver().openFileDescriptor(this.pdfDocument, "r");
+            if (descriptor != null) {
+                rotations = PageGeometryStore.readRotations(descriptor, widths.length);
+            }
+        } catch (FileNotFoundException unused) {
+        }
+        PageGeometryTable table = new PageGeometryTable(widths, heights, rotations);
+        this.mGeometry = table;
+        if (this.mFingerprint != null) {
+            PageGeometryStore.put(this.mFingerprint, table);
+        }
+    }
+
+    public PDSRendererPool getRendererPool() {
+        return this.mRendererPool;
     }
 
     public int getNumPages() {
@@ -96,6 +184,11 @@ public class PDSPDFDocument {
         }
     }
 
+    /** Identifies this version of the document for {@link PageDiskCache}; null when the size is unknown. */
+    public String getFingerprint() {
+        return this.mFingerprint;
+    }
+
     public Uri getDocumentUri() {
         return this.pdfDocument;
     }
@@ -2,10 +2,14 @@ package com.mypdf.ocrpdfapp.signer.PDF;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
 import android.graphics.RectF;
 import android.graphics.pdf.PdfRenderer;
 import android.util.SizeF;
 
+import com.mypdf.ocrpdfapp.render.PageGeometryTable;
+import com.mypdf.ocrpdfapp.render.RenderMetrics;
+import com.mypdf.ocrpdfapp.render.RenderStage;
 import com.mypdf.ocrpdfapp.signer.Document.PDSPageViewer;
 import com.mypdf.ocrpdfapp.signer.PDSModel.PDSElement;
 
@@ -29,12 +33,22 @@ public class PDSPDFPage {
 
     public SizeF getPageSize() {
         if (this.mPageSize == null) {
-            synchronized (PDSPDFDocument.getLockObject()) {
-                synchronized (getDocument()) {
-                    PdfRenderer.Page openPage = ((PDSPDFDocument) getDocument()).getRenderer().openPage(getNumber());
-                    this.mPageSize = new SizeF((float) openPage.getWidth(), (float) openPage.getHeight());
-                    openPage.close();
-                }
+            PageGeometryTable geometry = getDocument().getGeometry();
+            if (geometry != null) {
+                this.mPageSize = new SizeF((float) geometry.width(getNumber()), (float) geometry.height(getNumber()));
+                return this.mPageSize;
+            }
+            PDSRendererPool pool = getDocument().getRendererPool();
+            PdfRenderer renderer = pool != null ? pool.acquire() : null;
+            if (renderer == null) {
+                return DEF_PAGE_SIZE;
+            }
+            try {
+                PdfRenderer.Page openPage = renderer.openPage(getNumber());
+                this.mPageSize = new SizeF((float) openPage.getWidth(), (float) openPage.getHeight());
+                openPage.close();
+            } finally {
+                pool.release(renderer);
             }
         }
         return this.mPageSize;
@@ -43,14 +57,51 @@ public class PDSPDFPage {
 
     public void renderPage(Context context, Bitmap bitmap, boolean z, boolean z2) {
         int i = z2 ? 2 : 1;
-        synchronized (PDSPDFDocument.getLockObject()) {
-            synchronized (getDocument()) {
-
-                PdfRenderer.Page openPage = ((PDSPDFDocument) getDocument()).getRenderer().openPage(getNumber());
+        PDSRendererPool pool = getDocument().getRendererPool();
+        long waitStart = RenderMetrics.now();
+        PdfRenderer renderer = pool != null ? pool.acquire() : null;
+        if (renderer == null) {
+            return;
+        }
+        RenderMetrics.record(RenderStage.RENDERER_WAIT, waitStart);
+        try {
+            long openStart = RenderMetrics.now();
+            PdfRenderer.Page openPage = renderer.openPage(getNumber());
+            RenderMetrics.record(RenderStage.OPEN_PAGE, openStart);
+            try {
                 this.mPageSize = new SizeF((float) openPage.getWidth(), (float) openPage.getHeight());
+                long renderStart = RenderMetrics.now();
                 openPage.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                RenderMetrics.record(RenderStage.RENDER, renderStart);
+            } finally {
+                openPage.close();
+            }
+        } finally {
+            pool.release(renderer);
+        }
+    }
+
+    public void renderTile(Bitmap bitmap, Matrix transform) {
+        PDSRendererPool pool = getDocument().getRendererPool();
+        long waitStart = RenderMetrics.now();
+        PdfRenderer renderer = pool != null ? pool.acquire() : null;
+        if (renderer == null) {
+            return;
+        }
+        RenderMetrics.record(RenderStage.RENDERER_WAIT, waitStart);
+        try {
+            long openStart = RenderMetrics.now();
+            PdfRenderer.Page openPage = renderer.openPage(getNumber());
+            RenderMetrics.record(RenderStage.OPEN_PAGE, openStart);
+            try {
+                long renderStart = RenderMetrics.now();
+                openPage.render(bitmap, null, transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                RenderMetrics.record(RenderStage.RENDER, renderStart);
+            } finally {
                 openPage.close();
             }
+        } finally {
+            pool.release(renderer);
         }
     }
 
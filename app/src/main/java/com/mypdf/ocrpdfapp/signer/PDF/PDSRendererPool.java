@@ -0,0 +1,152 @@
+package com.mypdf.ocrpdfapp.signer.PDF;
+
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+
+import com.mypdf.ocrpdfapp.signer.Document.PDSRenderScheduler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Up to {@code maxRenderers} PdfRenderer instances over one document, each on its own
+ * duplicate of the file descriptor. A renderer is lent to one caller at a time, which keeps
+ * the one-open-page-per-renderer rule; extra renderers are only created when every existing
+ * one is busy.
+ *
+ * More renderers don't make pages render in parallel: the framework runs pdfium calls under
+ * one process-wide lock on API 28+. They only let a caller open a page while another
+ * renderer is between calls, which is why {@link PDSPDFDocument} uses one by default.
+ *
+ * The scheduler runs more threads than there are renderers, so jobs already dequeued can
+ * block here. A released renderer goes to the waiter with the highest
+ * {@link PDSRenderScheduler#currentPriority()}, so a visible page never waits behind
+ * geometry chunks or tiles that happened to start first.
+ */
+public final class PDSRendererPool {
+    private final ParcelFileDescriptor mFileDescriptor;
+    private final int mMaxRenderers;
+    private final ArrayDeque<PdfRenderer> mIdle = new ArrayDeque<>();
+    private final ArrayList<PdfRenderer> mAll = new ArrayList<>();
+    private final PriorityQueue<Waiter> mWaiters = new PriorityQueue<>(4, new Comparator<Waiter>() {
+        public int compare(Waiter lhs, Waiter rhs) {
+            int byPriority = lhs.mPriority.compareTo(rhs.mPriority);
+            return byPriority != 0 ? byPriority : Long.compare(lhs.mSequence, rhs.mSequence);
+        }
+    });
+    private long mWaiterSequence = 0;
+    private final int mPageCount;
+    private boolean mClosed = false;
+
+    PDSRendererPool(ParcelFileDescriptor fileDescriptor, int maxRenderers) throws IOException {
+        this.mFileDescriptor = fileDescriptor;
+        this.mMaxRenderers = Math.max(1, maxRenderers);
+        PdfRenderer renderer = new PdfRenderer(fileDescriptor);
+        this.mPageCount = renderer.getPageCount();
+        this.mAll.add(renderer);
+        this.mIdle.add(renderer);
+    }
+
+    public int getPageCount() {
+        return this.mPageCount;
+    }
+
+    /**
+     * Borrows a renderer, waiting if all of them are busy. Returns null once the pool is
+     * closed or the calling thread is interrupted. Every renderer must go back through
+     * {@link #release(PdfRenderer)}.
+     */
+    public synchronized PdfRenderer acquire() {
+        if (this.mClosed) {
+            return null;
+        }
+        PdfRenderer renderer = this.mIdle.pollFirst();
+        if (renderer != null) {
+            return renderer;
+        }
+        if (this.mAll.size() < this.mMaxRenderers) {
+            renderer = createRenderer();
+            if (renderer != null) {
+                return renderer;
+            }
+        }
+        Waiter waiter = new Waiter(PDSRenderScheduler.currentPriority(), this.mWaiterSequence++);
+        this.mWaiters.add(waiter);
+        while (waiter.mRenderer == null && !this.mClosed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!this.mWaiters.remove(waiter) && waiter.mRenderer != null) {
+                    // Granted while being interrupted; pass it on
+                    release(waiter.mRenderer);
+                }
+                return null;
+            }
+        }
+        // Closed while waiting: null, unless a renderer was granted first; release() closes that one
+        this.mWaiters.remove(waiter);
+        return waiter.mRenderer;
+    }
+
+    public synchronized void release(PdfRenderer renderer) {
+        if (this.mClosed) {
+            renderer.close();
+            return;
+        }
+        Waiter next = this.mWaiters.poll();
+        if (next == null) {
+            this.mIdle.addFirst(renderer);
+            return;
+        }
+        next.mRenderer = renderer;
+        notifyAll();
+    }
+
+    /** Closes idle renderers now and busy ones as they are released. */
+    public synchronized void close() {
+        if (this.mClosed) {
+            return;
+        }
+        this.mClosed = true;
+        for (PdfRenderer renderer : this.mIdle) {
+            renderer.close();
+        }
+        this.mIdle.clear();
+        notifyAll();
+    }
+
+    // PdfRenderer reads with pread, so duplicates sharing one file offset are safe.
+    // Each renderer owns its descriptor and closes it in close().
+    private PdfRenderer createRenderer() {
+        ParcelFileDescriptor duplicate = null;
+        try {
+            duplicate = this.mFileDescriptor.dup();
+            PdfRenderer renderer = new PdfRenderer(duplicate);
+            this.mAll.add(renderer);
+            return renderer;
+        } catch (IOException | RuntimeException e) {
+            if (duplicate != null) {
+                try {
+                    duplicate.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Waiter {
+        final PDSRenderScheduler.Priority mPriority;
+        final long mSequence;
+        PdfRenderer mRenderer;
+
+        Waiter(PDSRenderScheduler.Priority priority, long sequence) {
+            this.mPriority = priority;
+            this.mSequence = sequence;
+        }
+    }
+}
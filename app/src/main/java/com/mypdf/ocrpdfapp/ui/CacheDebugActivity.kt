@@ -0,0 +1,200 @@
+package com.mypdf.ocrpdfapp.ui
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ApplicationInfo
+import android.os.Bundle
+import android.widget.Toast
+import androidx.activity.ComponentActivity
+import androidx.activity.compose.setContent
+import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.items
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.ArrowBack
+import androidx.compose.material3.*
+import androidx.compose.runtime.*
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.unit.dp
+import com.mypdf.ocrpdfapp.render.CacheRegistry
+import com.mypdf.ocrpdfapp.render.CacheUsage
+import com.mypdf.ocrpdfapp.render.RenderMetrics
+import com.mypdf.ocrpdfapp.ui.theme.PDFTheme
+import kotlinx.coroutines.delay
+
+/**
+ * Debug-only screen listing every registered cache with its current and maximum size, and
+ * buttons that replay trim levels so the tiers can be checked without a low-memory device.
+ * Also shows the [RenderMetrics] report, toggles the viewer overlay and dumps it to a file.
+ */
+class CacheDebugActivity : ComponentActivity() {
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        if (applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE == 0) {
+            finish()
+            return
+        }
+        setContent {
+            PDFTheme {
+                Surface(
+                    modifier = Modifier.fillMaxSize(),
+                    color = MaterialTheme.colorScheme.background
+                ) {
+                    CacheDebugScreen(onBackClick = { finish() })
+                }
+            }
+        }
+    }
+
+    companion object {
+        fun isAvailable(context: Context): Boolean {
+            return context.applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE != 0
+        }
+
+        fun start(context: Context) {
+            context.startActivity(Intent(context, CacheDebugActivity::class.java))
+        }
+    }
+}
+
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun CacheDebugScreen(onBackClick: () -> Unit) {
+    val context = LocalContext.current
+    var usage by remember { mutableStateOf(CacheRegistry.snapshot()) }
+    var metricsReport by remember { mutableStateOf(RenderMetrics.report()) }
+    var refreshKey by remember { mutableStateOf(0) }
+    val overlayEnabled by RenderMetrics.overlayEnabled.collectAsState()
+
+    LaunchedEffect(refreshKey) {
+        while (true) {
+            usage = CacheRegistry.snapshot()
+            metricsReport = RenderMetrics.report()
+            delay(1000)
+        }
+    }
+
+    Scaffold(
+        topBar = {
+            TopAppBar(
+                title = { Text("Cache usage") },
+                navigationIcon = {
+                    IconButton(onClick = onBackClick) {
+                        Icon(Icons.Default.ArrowBack, contentDescription = "Back")
+                    }
+                }
+            )
+        }
+    ) { padding ->
+        Column(
+            modifier = Modifier
+                .fillMaxSize()
+                .padding(padding)
+                .padding(16.dp)
+        ) {
+            val runtime = Runtime.getRuntime()
+            Text(
+                text = "Heap ${formatBytes(runtime.totalMemory() - runtime.freeMemory())} of ${formatBytes(runtime.maxMemory())}",
+                style = MaterialTheme.typography.titleMedium
+            )
+            Text(
+                text = "Caches ${formatBytes(usage.sumOf { it.currentBytes })}",
+                style = MaterialTheme.typography.bodyMedium
+            )
+
+            Spacer(modifier = Modifier.height(8.dp))
+            Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+                listOf(
+                    "Low" to ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                    "Moderate" to ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+                    "Complete" to ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                ).forEach { (label, level) ->
+                    OutlinedButton(onClick = {
+                        CacheRegistry.onTrimMemory(level)
+                        refreshKey++
+                    }) {
+                        Text(label)
+                    }
+                }
+            }
+
+            Spacer(modifier = Modifier.height(8.dp))
+            LazyColumn(modifier = Modifier.fillMaxSize()) {
+                items(usage) { cache ->
+                    CacheUsageRow(cache)
+                    Divider()
+                }
+
+                item {
+                    Spacer(modifier = Modifier.height(16.dp))
+                    Text("Render metrics", style = MaterialTheme.typography.titleMedium)
+                    Row(verticalAlignment = Alignment.CenterVertically) {
+                        Text("Overlay in viewer", modifier = Modifier.weight(1f))
+                        Switch(
+                            checked = overlayEnabled,
+                            onCheckedChange = { RenderMetrics.setOverlayEnabled(it) }
+                        )
+                    }
+                    Row(horizontalArrangement = Arrangement.spacedBy(8.dp)) {
+                        OutlinedButton(onClick = {
+                            val file = try {
+                                RenderMetrics.dumpTo(context)
+                            } catch (e: Exception) {
+                                e.printStackTrace()
+                                null
+                            }
+                            val message = file?.let { "Saved ${it.absolutePath}" } ?: "Could not save metrics"
+                            Toast.makeText(context, message, Toast.LENGTH_LONG).show()
+                        }) {
+                            Text("Dump to file")
+                        }
+                        OutlinedButton(onClick = {
+                            RenderMetrics.reset()
+                            refreshKey++
+                        }) {
+                            Text("Reset")
+                        }
+                    }
+                    Spacer(modifier = Modifier.height(8.dp))
+                    Text(
+                        text = metricsReport,
+                        style = MaterialTheme.typography.bodySmall,
+                        fontFamily = FontFamily.Monospace
+                    )
+                }
+            }
+        }
+    }
+}
+
+@Composable
+private fun CacheUsageRow(cache: CacheUsage) {
+    Column(
+        modifier = Modifier
+            .fillMaxWidth()
+            .padding(vertical = 8.dp)
+    ) {
+        Text("${cache.name} (${cache.priority.name.lowercase()})", style = MaterialTheme.typography.bodyLarge)
+        Spacer(modifier = Modifier.height(4.dp))
+        LinearProgressIndicator(
+            progress = if (cache.maxBytes > 0) (cache.currentBytes.toFloat() / cache.maxBytes).coerceIn(0f, 1f) else 0f,
+            modifier = Modifier.fillMaxWidth()
+        )
+        Text(
+            text = "${formatBytes(cache.currentBytes)} / ${formatBytes(cache.maxBytes)}",
+            style = MaterialTheme.typography.bodySmall
+        )
+    }
+}
+
+private fun formatBytes(bytes: Long): String {
+    return when {
+        bytes >= 1024 * 1024 -> String.format("%.1f MB", bytes / (1024f * 1024f))
+        bytes >= 1024 -> "${bytes / 1024} KB"
+        else -> "$bytes B"
+    }
+}
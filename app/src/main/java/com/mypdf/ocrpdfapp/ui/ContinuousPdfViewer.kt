@@ -0,0 +1,137 @@
+package com.mypdf.ocrpdfapp.ui
+
+import android.graphics.Bitmap
+import androidx.compose.foundation.Image
+import androidx.compose.foundation.background
+import androidx.compose.foundation.layout.Arrangement
+import androidx.compose.foundation.layout.BoxWithConstraints
+import androidx.compose.foundation.layout.Box
+import androidx.compose.foundation.layout.PaddingValues
+import androidx.compose.foundation.layout.aspectRatio
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.rememberLazyListState
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.runtime.snapshotFlow
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.graphics.asImageBitmap
+import androidx.compose.ui.platform.LocalDensity
+import androidx.compose.ui.unit.dp
+import com.mypdf.ocrpdfapp.render.PageBitmapCache
+import com.mypdf.ocrpdfapp.render.PageGeometryTable
+import com.mypdf.ocrpdfapp.render.PageImageService
+import com.mypdf.ocrpdfapp.render.PageKey
+import com.mypdf.ocrpdfapp.render.PagePrefetcher
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.flow.collectLatest
+import kotlin.math.roundToInt
+
+/**
+ * Vertically scrolling viewer that only holds bitmaps for composed pages. Placeholders take
+ * their size from [PageGeometryTable], so the scroll position never jumps when a page
+ * finishes rendering.
+ */
+@Composable
+fun ContinuousPdfViewer(
+    session: PdfRenderSession,
+    geometry: PageGeometryTable,
+    initialPage: Int,
+    onPageChanged: (Int) -> Unit,
+    modifier: Modifier = Modifier
+) {
+    val listState = rememberLazyListState(initialFirstVisibleItemIndex = initialPage - 1)
+
+    BoxWithConstraints(modifier = modifier.fillMaxSize()) {
+        val widthPx = with(LocalDensity.current) { maxWidth.toPx() }
+
+        // Render pages to fit the width
+        val scaleForPage: (Int) -> Float = remember(geometry, widthPx) {
+            { pageIndex -> geometry.fitScale(pageIndex, widthPx.roundToInt(), Int.MAX_VALUE) }
+        }
+        val prefetcher = remember(session, scaleForPage) {
+            PagePrefetcher(session, radius = 1, scaleForPage = scaleForPage)
+        }
+
+        LaunchedEffect(listState) {
+            snapshotFlow { listState.isScrollInProgress }.collect { prefetcher.setInteracting(it) }
+        }
+        LaunchedEffect(listState, prefetcher) {
+            snapshotFlow { listState.firstVisibleItemIndex }.collectLatest { first ->
+                onPageChanged(first + 1)
+                prefetcher.prefetchAround(first)
+            }
+        }
+
+        LazyColumn(
+            state = listState,
+            modifier = Modifier.fillMaxSize(),
+            contentPadding = PaddingValues(vertical = 8.dp),
+            verticalArrangement = Arrangement.spacedBy(8.dp)
+        ) {
+            items(count = geometry.pageCount, key = { it }) { pageIndex ->
+                ContinuousPageItem(
+                    session = session,
+                    pageIndex = pageIndex,
+                    aspectRatio = geometry.aspectRatio(pageIndex),
+                    scale = scaleForPage(pageIndex)
+                )
+            }
+        }
+    }
+}
+
+@Composable
+internal fun ContinuousPageItem(
+    session: PdfRenderSession,
+    pageIndex: Int,
+    aspectRatio: Float,
+    scale: Float
+) {
+    // Held only while the item is composed; scrolled-off pages drop their reference
+    var bitmap by remember(pageIndex, scale) {
+        mutableStateOf<Bitmap?>(PageBitmapCache.getPinned(PageKey(session.fingerprint, pageIndex, scale)))
+    }
+    DisposableEffect(bitmap) {
+        val shown = bitmap
+        onDispose { shown?.let { PageBitmapCache.unpin(it) } }
+    }
+
+    LaunchedEffect(pageIndex, scale) {
+        if (bitmap == null) {
+            bitmap = try {
+                PageImageService.getPage(session, pageIndex, scale)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                e.printStackTrace()
+                null
+            }
+        }
+    }
+
+    val colors = rememberPageColors()
+    Box(
+        modifier = Modifier
+            .fillMaxWidth()
+            .aspectRatio(aspectRatio)
+            .background(colors.paper)
+    ) {
+        bitmap?.let {
+            val imageBitmap = remember(it) { it.asImageBitmap() }
+            Image(
+                bitmap = imageBitmap,
+                contentDescription = "PDF page ${pageIndex + 1}",
+                modifier = Modifier.fillMaxSize(),
+                colorFilter = colors.filter
+            )
+        }
+    }
+}
@@ -30,6 +30,8 @@ import androidx.lifecycle.viewModelScope
 import androidx.lifecycle.compose.collectAsStateWithLifecycle
 import com.mypdf.ocrpdfapp.model.PdfFile
 import com.mypdf.ocrpdfapp.model.SearchResult
+import com.mypdf.ocrpdfapp.render.CachePriority
+import com.mypdf.ocrpdfapp.render.CacheRegistry
 import com.mypdf.ocrpdfapp.ui.theme.PDFTheme
 import com.mypdf.ocrpdfapp.viewmodel.PdfViewModel
 import com.itextpdf.text.pdf.PdfReader
@@ -84,6 +86,13 @@ class SearchViewModel : ViewModel() {
             return value.length * 2
         }
     }
+
+    // Extracted text is slow to rebuild, so it is kept longer than rendered bitmaps
+    private val trimmableContents = CacheRegistry.lruCache("Search text", CachePriority.HIGH, _pdfContents)
+
+    init {
+        CacheRegistry.register(trimmableContents)
+    }
     
     private var extractionJob: Job? = null
 
@@ -291,6 +300,7 @@ class SearchViewModel : ViewModel() {
         super.onCleared()
         extractionJob?.cancel()
         _pdfContents.evictAll()
+        CacheRegistry.unregister(trimmableContents)
         Log.d(TAG, "ViewModel cleared, cancelling extraction job and clearing cache")
     }
 }
@@ -545,6 +555,10 @@ fun SearchScreen(
                                                 action = Intent.ACTION_VIEW
                                                 addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION)
                                                 addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP)
+                                                putExtra(ReaderActivity.EXTRA_PDF_PATH, file.absolutePath)
+                                                if (searchQuery.isNotBlank()) {
+                                                    putExtra(ReaderActivity.EXTRA_SEARCH_QUERY, searchQuery)
+                                                }
                                             }
                                             context.startActivity(intent)
                                         } catch (e: Exception) {
@@ -0,0 +1,57 @@
+package com.mypdf.ocrpdfapp.ui
+
+import androidx.compose.foundation.layout.Box
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.Brightness4
+import androidx.compose.material3.DropdownMenu
+import androidx.compose.material3.DropdownMenuItem
+import androidx.compose.material3.Icon
+import androidx.compose.material3.IconButton
+import androidx.compose.material3.RadioButton
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.collectAsState
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.graphics.ColorFilter
+import androidx.compose.ui.graphics.ColorMatrix
+import com.mypdf.ocrpdfapp.render.PageColorMode
+import com.mypdf.ocrpdfapp.render.PageColorSettings
+
+/** Page tint for the current [PageColorMode]: the filter to draw pages with and the paper color. */
+internal class PageColors(val filter: ColorFilter?, val paper: Color)
+
+@Composable
+internal fun rememberPageColors(): PageColors {
+    val mode by PageColorSettings.current.collectAsState()
+    return remember(mode) {
+        PageColors(mode.colorMatrix()?.let { ColorFilter.colorMatrix(ColorMatrix(it)) }, Color(mode.paperColor))
+    }
+}
+
+/** Top bar action that lists the page color modes. */
+@Composable
+fun PageColorModeAction() {
+    var expanded by remember { mutableStateOf(false) }
+    val current by PageColorSettings.current.collectAsState()
+    Box {
+        IconButton(onClick = { expanded = true }) {
+            Icon(Icons.Default.Brightness4, contentDescription = "Page colors")
+        }
+        DropdownMenu(expanded = expanded, onDismissRequest = { expanded = false }) {
+            PageColorMode.values().forEach { mode ->
+                DropdownMenuItem(
+                    text = { Text(mode.label) },
+                    leadingIcon = { RadioButton(selected = mode == current, onClick = null) },
+                    onClick = {
+                        PageColorSettings.setMode(mode)
+                        expanded = false
+                    }
+                )
+            }
+        }
+    }
+}
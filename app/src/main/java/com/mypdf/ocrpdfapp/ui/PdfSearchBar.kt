@@ -0,0 +1,70 @@
+package com.mypdf.ocrpdfapp.ui
+
+import androidx.compose.foundation.layout.Row
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.text.KeyboardActions
+import androidx.compose.foundation.text.KeyboardOptions
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.Close
+import androidx.compose.material.icons.filled.KeyboardArrowDown
+import androidx.compose.material.icons.filled.KeyboardArrowUp
+import androidx.compose.material3.Icon
+import androidx.compose.material3.IconButton
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.OutlinedTextField
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.text.input.ImeAction
+import androidx.compose.ui.unit.dp
+
+/** Query field and hit navigation shown under the viewer's top bar while searching. */
+@Composable
+fun PdfSearchBar(
+    query: String,
+    onQueryChange: (String) -> Unit,
+    hitCount: Int,
+    currentHit: Int,
+    searching: Boolean,
+    onPrevious: () -> Unit,
+    onNext: () -> Unit,
+    onClose: () -> Unit
+) {
+    Row(
+        modifier = Modifier
+            .fillMaxWidth()
+            .padding(horizontal = 8.dp, vertical = 4.dp),
+        verticalAlignment = Alignment.CenterVertically
+    ) {
+        OutlinedTextField(
+            value = query,
+            onValueChange = onQueryChange,
+            placeholder = { Text("Search in document") },
+            singleLine = true,
+            keyboardOptions = KeyboardOptions(imeAction = ImeAction.Search),
+            keyboardActions = KeyboardActions(onSearch = { onNext() }),
+            modifier = Modifier.weight(1f)
+        )
+        Text(
+            text = when {
+                hitCount > 0 -> "${currentHit + 1}/$hitCount"
+                searching -> "…"
+                query.isBlank() -> ""
+                else -> "0/0"
+            },
+            style = MaterialTheme.typography.bodyMedium,
+            modifier = Modifier.padding(horizontal = 8.dp)
+        )
+        IconButton(onClick = onPrevious, enabled = hitCount > 0) {
+            Icon(Icons.Default.KeyboardArrowUp, contentDescription = "Previous match")
+        }
+        IconButton(onClick = onNext, enabled = hitCount > 0) {
+            Icon(Icons.Default.KeyboardArrowDown, contentDescription = "Next match")
+        }
+        IconButton(onClick = onClose) {
+            Icon(Icons.Default.Close, contentDescription = "Close search")
+        }
+    }
+}
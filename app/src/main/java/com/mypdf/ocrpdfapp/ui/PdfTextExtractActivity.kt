@@ -25,6 +25,11 @@ import androidx.compose.ui.unit.dp
 import com.mypdf.ocrpdfapp.ui.theme.PDFTheme
 import com.itextpdf.text.pdf.PdfReader
 import com.itextpdf.text.pdf.parser.PdfTextExtractor
+import com.mypdf.ocrpdfapp.model.PdfFile
+import com.mypdf.ocrpdfapp.render.PageWordIndex
+import com.mypdf.ocrpdfapp.render.PageWordIndexCache
+import com.mypdf.ocrpdfapp.render.fingerprint
+import com.mypdf.ocrpdfapp.screens.ReaderActivity
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -74,6 +79,7 @@ fun PdfTextExtractScreen(
     var searchQuery by remember { mutableStateOf("") }
     var searchResults by remember { mutableStateOf<List<Int>>(emptyList()) }
     var currentSearchIndex by remember { mutableStateOf(0) }
+    var pageStarts by remember { mutableStateOf(IntArray(0)) }
     val context = LocalContext.current
     val coroutineScope = rememberCoroutineScope()
     val scrollState = rememberScrollState()
@@ -84,13 +90,22 @@ fun PdfTextExtractScreen(
                 withContext(Dispatchers.IO) {
                     val reader = PdfReader(pdfPath)
                     val text = StringBuilder()
+                    val starts = IntArray(reader.numberOfPages)
+                    // Word positions come from the same parse, so "Show on page" opens with them cached
+                    val fingerprint = File(pdfPath).let {
+                        PdfFile(it.name, it.absolutePath, it.length(), it.lastModified(), it).fingerprint
+                    }
                     
                     for (i in 1..reader.numberOfPages) {
-                        text.append(PdfTextExtractor.getTextFromPage(reader, i))
+                        starts[i - 1] = text.length
+                        val words = PageWordIndex.Builder(reader.getCropBox(i), reader.getPageRotation(i))
+                        text.append(PdfTextExtractor.getTextFromPage(reader, i, words))
+                        PageWordIndexCache.put(fingerprint, i - 1, words.build())
                         text.append("\n\n--- Page ${i} ---\n\n")
                     }
                     
                     reader.close()
+                    pageStarts = starts
                     extractedText = text.toString()
                 }
             } catch (e: Exception) {
@@ -200,6 +215,21 @@ fun PdfTextExtractScreen(
                     ) {
                         Text("Previous")
                     }
+
+                    OutlinedButton(
+                        onClick = {
+                            val match = searchResults.getOrNull(currentSearchIndex) ?: return@OutlinedButton
+                            val pageIndex = pageStarts.binarySearch(match).let { if (it >= 0) it else -it - 2 }
+                            val intent = Intent(context, ReaderActivity::class.java).apply {
+                                putExtra(ReaderActivity.EXTRA_PDF_PATH, pdfPath)
+                                putExtra(ReaderActivity.EXTRA_SEARCH_QUERY, searchQuery)
+                                putExtra(ReaderActivity.EXTRA_SEARCH_PAGE, pageIndex.coerceAtLeast(0) + 1)
+                            }
+                            context.startActivity(intent)
+                        }
+                    ) {
+                        Text("Show on page")
+                    }
                     
                     Button(
                         onClick = {
@@ -1,72 +1,55 @@
 package com.mypdf.ocrpdfapp.ui
 
-import android.content.Context
 import android.graphics.Bitmap
-import android.graphics.pdf.PdfRenderer
-import android.os.ParcelFileDescriptor
+import android.widget.Toast
 import androidx.compose.foundation.Image
+import androidx.compose.foundation.gestures.detectTapGestures
 import androidx.compose.foundation.layout.*
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.ArrowBack
+import androidx.compose.material.icons.filled.Description
+import androidx.compose.material.icons.filled.Search
+import androidx.compose.material.icons.filled.Subject
+import androidx.compose.material.icons.filled.ViewAgenda
 import androidx.compose.material3.*
 import androidx.compose.runtime.*
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.scale
 import androidx.compose.ui.graphics.asImageBitmap
+import androidx.compose.ui.input.pointer.PointerEventPass
+import androidx.compose.ui.input.pointer.pointerInput
+import androidx.compose.ui.layout.onSizeChanged
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.unit.IntSize
 import androidx.compose.ui.unit.dp
 import com.mypdf.ocrpdfapp.model.PdfFile
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.launch
+import com.mypdf.ocrpdfapp.render.PageBitmapCache
+import com.mypdf.ocrpdfapp.render.PageGeometryTable
+import com.mypdf.ocrpdfapp.render.PageImageService
+import com.mypdf.ocrpdfapp.render.PageKey
+import com.mypdf.ocrpdfapp.render.PagePrefetcher
+import com.mypdf.ocrpdfapp.render.PageTextSource
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
+import com.mypdf.ocrpdfapp.render.RenderMetrics
+import com.mypdf.ocrpdfapp.render.RenderStage
+import com.mypdf.ocrpdfapp.render.SearchHit
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.withContext
 
-suspend fun renderPdfPage(context: Context, pdfFile: PdfFile, pageNumber: Int): Bitmap? {
-    return withContext(Dispatchers.IO) {
-        var fileDescriptor: ParcelFileDescriptor? = null
-        var renderer: PdfRenderer? = null
-        var page: PdfRenderer.Page? = null
-        
-        try {
-            // Get file descriptor based on whether we have a URI or file
-            fileDescriptor = when {
-                pdfFile.uri != null -> {
-                    context.contentResolver.openFileDescriptor(pdfFile.uri, "r")
-                }
-                pdfFile.file != null -> {
-                    ParcelFileDescriptor.open(pdfFile.file, ParcelFileDescriptor.MODE_READ_ONLY)
-                }
-                else -> null
-            }
-            
-            if (fileDescriptor == null) {
-                throw IllegalStateException("Could not open PDF file")
-            }
+private const val SEARCH_DEBOUNCE_MS = 300L
 
-            renderer = PdfRenderer(fileDescriptor)
-            if (pageNumber < 1 || pageNumber > renderer.pageCount) {
-                throw IllegalArgumentException("Invalid page number")
-            }
-
-            page = renderer.openPage(pageNumber - 1)
-            val width = page.width * 2
-            val height = page.height * 2
-            
-            val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
-            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY)
-            bitmap
-        } catch (e: Exception) {
-            e.printStackTrace()
-            null
-        } finally {
-            try {
-                page?.close()
-                renderer?.close()
-                fileDescriptor?.close()
-            } catch (e: Exception) {
-                e.printStackTrace()
-            }
-        }
+suspend fun renderPdfPage(session: PdfRenderSession, pageNumber: Int, scale: Float): Bitmap? {
+    return try {
+        PageImageService.getPage(session, pageNumber - 1, scale)
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        e.printStackTrace()
+        null
     }
 }
 
@@ -74,73 +57,233 @@ suspend fun renderPdfPage(context: Context, pdfFile: PdfFile, pageNumber: Int):
 @Composable
 fun PdfViewerScreen(
     pdfFile: PdfFile,
-    onBackClick: () -> Unit
+    onBackClick: () -> Unit,
+    initialSearchQuery: String? = null,
+    initialPage: Int = 1
 ) {
-    var currentPage by remember { mutableStateOf(1) }
+    var currentPage by remember { mutableStateOf(initialPage) }
     var totalPages by remember { mutableStateOf(1) }
     var scale by remember { mutableStateOf(1f) }
     var errorMessage by remember { mutableStateOf<String?>(null) }
     val context = LocalContext.current
     var pdfBitmap by remember { mutableStateOf<Bitmap?>(null) }
     var isLoading by remember { mutableStateOf(true) }
-    val scope = rememberCoroutineScope()
+    var session by remember(pdfFile) { mutableStateOf<PdfRenderSession?>(null) }
+    var geometry by remember(pdfFile) { mutableStateOf<PageGeometryTable?>(null) }
+    var continuousMode by remember { mutableStateOf(false) }
+    var reflowMode by remember { mutableStateOf(false) }
+    var textSource by remember(pdfFile) { mutableStateOf<PageTextSource?>(null) }
+    var viewportSize by remember { mutableStateOf(IntSize.Zero) }
+    var searchActive by remember { mutableStateOf(initialSearchQuery != null) }
+    var searchQuery by remember { mutableStateOf(initialSearchQuery ?: "") }
+    var searchHits by remember(pdfFile) { mutableStateOf<List<SearchHit>>(emptyList()) }
+    var currentHit by remember(pdfFile) { mutableStateOf(-1) }
+    var searching by remember { mutableStateOf(false) }
+    val showMetrics by RenderMetrics.overlayEnabled.collectAsState()
+    // Cold open to first page, then page flips, for comparing session changes on a device
+    val openedAt = remember(pdfFile) { RenderMetrics.now() }
+    var firstPageShown by remember(pdfFile) { mutableStateOf(false) }
 
-    LaunchedEffect(pdfFile, currentPage) {
-        isLoading = true
-        scope.launch {
-            try {
-                pdfBitmap = renderPdfPage(context, pdfFile, currentPage)
-                if (pdfBitmap == null) {
-                    errorMessage = "Error loading PDF page"
-                }
-            } catch (e: Exception) {
-                errorMessage = "Error: ${e.message}"
-            } finally {
-                isLoading = false
-            }
+    // Shared renderer for the document, handed back when the screen leaves composition
+    LaunchedEffect(pdfFile) {
+        val opened = try {
+            withContext(NonCancellable) { PageImageService.openSession(context, pdfFile) }
+        } catch (e: Exception) {
+            e.printStackTrace()
+            errorMessage = "Error: ${e.message}"
+            isLoading = false
+            return@LaunchedEffect
+        }
+        try {
+            totalPages = opened.pageCount
+            session = opened
+            awaitCancellation()
+        } finally {
+            session = null
+            PageImageService.releaseSession(opened)
         }
     }
 
-    LaunchedEffect(pdfFile) {
-        withContext(Dispatchers.IO) {
-            try {
-                val fileDescriptor = when {
-                    pdfFile.uri != null -> {
-                        context.contentResolver.openFileDescriptor(pdfFile.uri, "r")
-                    }
-                    pdfFile.file != null -> {
-                        ParcelFileDescriptor.open(pdfFile.file, ParcelFileDescriptor.MODE_READ_ONLY)
+    // The text reader is only opened while reflow or search needs it
+    val needsText = reflowMode || searchActive
+    LaunchedEffect(pdfFile, needsText) {
+        if (!needsText) return@LaunchedEffect
+        val opened = try {
+            withContext(NonCancellable) { PageTextSource.open(context, pdfFile) }
+        } catch (e: Exception) {
+            e.printStackTrace()
+            Toast.makeText(context, "Text is not available for this PDF", Toast.LENGTH_SHORT).show()
+            reflowMode = false
+            searchActive = false
+            return@LaunchedEffect
+        }
+        try {
+            textSource = opened
+            awaitCancellation()
+        } finally {
+            textSource = null
+            opened.close()
+        }
+    }
+
+    // Hits arrive page by page from the cached word indexes; the first one from the current
+    // page on is shown, wrapping to the first hit when the search ends without one
+    LaunchedEffect(textSource, searchActive, searchQuery) {
+        searchHits = emptyList()
+        currentHit = -1
+        val source = textSource
+        if (!searchActive || source == null || searchQuery.isBlank()) return@LaunchedEffect
+        delay(SEARCH_DEBOUNCE_MS)
+        searching = true
+        try {
+            source.search(searchQuery).collect { hits ->
+                searchHits = hits
+                if (currentHit < 0) {
+                    val next = hits.indexOfFirst { it.pageIndex >= currentPage - 1 }
+                    if (next >= 0) {
+                        currentHit = next
+                        currentPage = hits[next].pageIndex + 1
                     }
-                    else -> null
-                }
-                
-                if (fileDescriptor == null) {
-                    errorMessage = "Could not open PDF file"
-                    return@withContext
                 }
+            }
+            if (currentHit < 0 && searchHits.isNotEmpty()) {
+                currentHit = 0
+                currentPage = searchHits[0].pageIndex + 1
+            }
+        } finally {
+            searching = false
+        }
+    }
+    val showHit: (Int) -> Unit = { index ->
+        if (searchHits.isNotEmpty()) {
+            currentHit = index.mod(searchHits.size)
+            currentPage = searchHits[currentHit].pageIndex + 1
+        }
+    }
 
-                val renderer = PdfRenderer(fileDescriptor)
-                totalPages = renderer.pageCount
-                renderer.close()
-                fileDescriptor.close()
+    // Page sizes decide the render scale in both modes; reopened documents read them from disk
+    LaunchedEffect(session) {
+        val activeSession = session ?: return@LaunchedEffect
+        if (geometry == null) {
+            geometry = try {
+                activeSession.loadGeometry()
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 e.printStackTrace()
                 errorMessage = "Error: ${e.message}"
+                null
+            }
+        }
+    }
+
+    // Pages are rendered to fit the screen; zooming in renders the visible region separately
+    val scaleForPage: (Int) -> Float = remember(geometry, viewportSize) {
+        { pageIndex ->
+            geometry?.fitScale(pageIndex, viewportSize.width, viewportSize.height) ?: PdfRenderSession.DEFAULT_SCALE
+        }
+    }
+    val prefetcher = remember(session, scaleForPage) {
+        session?.let { PagePrefetcher(it, scaleForPage = scaleForPage) }
+    }
+
+    // Restarted on every page change, which cancels the render and prefetch for the previous page
+    LaunchedEffect(session, currentPage, continuousMode, reflowMode, geometry, viewportSize) {
+        val activeSession = session ?: return@LaunchedEffect
+        if (continuousMode || reflowMode || geometry == null || viewportSize == IntSize.Zero) return@LaunchedEffect
+        val flipStart = RenderMetrics.now()
+        val scale = scaleForPage(currentPage - 1)
+        val cached = PageBitmapCache.getPinned(PageKey(activeSession.fingerprint, currentPage - 1, scale))
+        val page = if (cached != null) {
+            cached
+        } else {
+            isLoading = true
+            renderPdfPage(activeSession, currentPage, scale).also {
+                if (it == null) errorMessage = "Error loading PDF page"
+            }
+        }
+        // Re-running for the page already shown must not keep the extra pin it just took
+        if (page != null && page === pdfBitmap) {
+            PageBitmapCache.unpin(page)
+        } else {
+            pdfBitmap = page
+            if (page != null && !firstPageShown) {
+                firstPageShown = true
+                RenderMetrics.record(RenderStage.FIRST_PAGE, openedAt)
+            } else if (page != null) {
+                RenderMetrics.record(RenderStage.PAGE_FLIP, flipStart)
             }
         }
+        isLoading = false
+        prefetcher?.prefetchAround(currentPage - 1)
+    }
+
+    // The displayed page is pinned so cache eviction can't hand it back to the bitmap pool
+    DisposableEffect(pdfBitmap) {
+        val shown = pdfBitmap
+        onDispose { shown?.let { PageBitmapCache.unpin(it) } }
     }
 
     Scaffold(
         topBar = {
-            TopAppBar(
-                title = { Text(pdfFile.name, maxLines = 1) },
-                navigationIcon = {
-                    IconButton(onClick = onBackClick) {
-                        Icon(Icons.Default.ArrowBack, contentDescription = "Back")
+            Column {
+                TopAppBar(
+                    title = {
+                        Text(
+                            pdfFile.name,
+                            maxLines = 1,
+                            // Hidden entry to the cache usage screen in debug builds
+                            modifier = Modifier.pointerInput(Unit) {
+                                detectTapGestures(onLongPress = {
+                                    if (CacheDebugActivity.isAvailable(context)) CacheDebugActivity.start(context)
+                                })
+                            }
+                        )
+                    },
+                    navigationIcon = {
+                        IconButton(onClick = onBackClick) {
+                            Icon(Icons.Default.ArrowBack, contentDescription = "Back")
+                        }
+                    },
+                    actions = {
+                        // Hits are shown on single pages, so search leaves the other modes
+                        IconButton(onClick = {
+                            searchActive = !searchActive
+                            if (searchActive) {
+                                reflowMode = false
+                                continuousMode = false
+                            }
+                        }) {
+                            Icon(Icons.Default.Search, contentDescription = "Search")
+                        }
+                        PageColorModeAction()
+                        IconButton(onClick = {
+                            reflowMode = !reflowMode
+                            if (reflowMode) {
+                                continuousMode = false
+                                searchActive = false
+                            }
+                        }) {
+                            Icon(
+                                imageVector = if (reflowMode) Icons.Default.Description else Icons.Default.Subject,
+                                contentDescription = if (reflowMode) "Page view" else "Text view"
+                            )
+                        }
+                        IconButton(onClick = {
+                            continuousMode = !continuousMode
+                            if (continuousMode) {
+                                reflowMode = false
+                                searchActive = false
+                            }
+                        }) {
+                            Icon(
+                                imageVector = if (continuousMode) Icons.Default.Description else Icons.Default.ViewAgenda,
+                                contentDescription = if (continuousMode) "Single page" else "Continuous scroll"
+                            )
+                        }
                     }
-                },
 //                actions = {
-                    // Share button
+                        // Share button
 //                    IconButton(
 //                        onClick = {
 //                            try {
@@ -173,7 +316,7 @@ fun PdfViewerScreen(
 //                        Icon(Icons.Default.Share, contentDescription = "Share")
 //                    }
                     
-                    // Options button
+                        // Options button
 //                    IconButton(
 //                        onClick = {
 //                            try {
@@ -192,15 +335,53 @@ fun PdfViewerScreen(
 //                        Icon(Icons.Default.MoreVert, contentDescription = "More options")
 //                    }
 //                }
-            )
+                )
+                if (searchActive) {
+                    PdfSearchBar(
+                        query = searchQuery,
+                        onQueryChange = { searchQuery = it },
+                        hitCount = searchHits.size,
+                        currentHit = currentHit,
+                        searching = searching,
+                        onPrevious = { showHit(currentHit - 1) },
+                        onNext = { showHit(currentHit + 1) },
+                        onClose = { searchActive = false }
+                    )
+                }
+            }
         }
     ) { padding ->
         Box(
             modifier = Modifier
                 .fillMaxSize()
                 .padding(padding)
+                .onSizeChanged { viewportSize = it }
         ) {
-            if (isLoading) {
+            val activeSession = session
+            val activeGeometry = geometry
+            val activeTextSource = textSource
+            if (reflowMode && errorMessage == null && activeSession != null && activeGeometry != null && activeTextSource != null) {
+                ReflowPdfViewer(
+                    textSource = activeTextSource,
+                    session = activeSession,
+                    geometry = activeGeometry,
+                    initialPage = currentPage,
+                    onPageChanged = { currentPage = it }
+                )
+            } else if (continuousMode && errorMessage == null && activeSession != null && activeGeometry != null) {
+                ContinuousPdfViewer(
+                    session = activeSession,
+                    geometry = activeGeometry,
+                    initialPage = currentPage,
+                    onPageChanged = { currentPage = it }
+                )
+                Text(
+                    text = "Page $currentPage of $totalPages",
+                    modifier = Modifier
+                        .align(Alignment.BottomCenter)
+                        .padding(16.dp)
+                )
+            } else if (isLoading || ((continuousMode || reflowMode) && errorMessage == null)) {
                 CircularProgressIndicator(
                     modifier = Modifier.align(Alignment.Center)
                 )
@@ -232,12 +413,38 @@ fun PdfViewerScreen(
                             modifier = Modifier
                                 .weight(1f)
                                 .fillMaxWidth()
+                                .pointerInput(prefetcher) {
+                                    // Let prefetch yield while a finger is on the page
+                                    awaitPointerEventScope {
+                                        while (true) {
+                                            val event = awaitPointerEvent(PointerEventPass.Initial)
+                                            prefetcher?.setInteracting(event.changes.any { it.pressed })
+                                        }
+                                    }
+                                }
                         ) {
-                            Image(
-                                bitmap = bitmap.asImageBitmap(),
-                                contentDescription = "PDF page $currentPage",
-                                modifier = Modifier.fillMaxSize()
-                            )
+                            if (activeSession != null && activeGeometry != null) {
+                                val pageHits = remember(searchHits, currentPage) {
+                                    searchHits.filter { it.pageIndex == currentPage - 1 }.map { it.boxes }
+                                }
+                                ZoomablePdfPage(
+                                    session = activeSession,
+                                    pageIndex = currentPage - 1,
+                                    pageWidth = activeGeometry.width(currentPage - 1),
+                                    pageHeight = activeGeometry.height(currentPage - 1),
+                                    bitmap = bitmap,
+                                    modifier = Modifier.fillMaxSize(),
+                                    highlights = pageHits,
+                                    activeHighlight = searchHits.getOrNull(currentHit)?.boxes
+                                )
+                            } else {
+                                Image(
+                                    bitmap = bitmap.asImageBitmap(),
+                                    contentDescription = "PDF page $currentPage",
+                                    modifier = Modifier.fillMaxSize(),
+                                    colorFilter = rememberPageColors().filter
+                                )
+                            }
                         }
                         
                         Row(
@@ -270,6 +477,14 @@ fun PdfViewerScreen(
                     }
                 }
             }
+
+            if (showMetrics) {
+                RenderMetricsOverlay(
+                    modifier = Modifier
+                        .align(Alignment.TopEnd)
+                        .padding(8.dp)
+                )
+            }
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.mypdf.ocrpdfapp.ui
+
+import androidx.compose.foundation.layout.Arrangement
+import androidx.compose.foundation.layout.BoxWithConstraints
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.layout.PaddingValues
+import androidx.compose.foundation.layout.Spacer
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.layout.height
+import androidx.compose.foundation.lazy.LazyColumn
+import androidx.compose.foundation.lazy.rememberLazyListState
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.runtime.snapshotFlow
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalDensity
+import androidx.compose.ui.unit.dp
+import com.mypdf.ocrpdfapp.render.PageGeometryTable
+import com.mypdf.ocrpdfapp.render.PageTextCache
+import com.mypdf.ocrpdfapp.render.PageTextSource
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
+import kotlinx.coroutines.CancellationException
+import kotlin.math.roundToInt
+
+/** Page text is loading, the page has text, or it has none and is rendered instead. */
+private sealed class ReflowPage {
+    object Loading : ReflowPage()
+    class Text(val text: String) : ReflowPage()
+    object Image : ReflowPage()
+}
+
+/**
+ * Reading mode that shows each page's text instead of a bitmap. Only composed pages are
+ * extracted, and image-only pages fall back to a rendered page, so a long text document
+ * is read without rasterizing it.
+ */
+@Composable
+fun ReflowPdfViewer(
+    textSource: PageTextSource,
+    session: PdfRenderSession,
+    geometry: PageGeometryTable,
+    initialPage: Int,
+    onPageChanged: (Int) -> Unit,
+    modifier: Modifier = Modifier
+) {
+    val listState = rememberLazyListState(initialFirstVisibleItemIndex = initialPage - 1)
+
+    LaunchedEffect(listState) {
+        snapshotFlow { listState.firstVisibleItemIndex }.collect { onPageChanged(it + 1) }
+    }
+
+    BoxWithConstraints(modifier = modifier.fillMaxSize()) {
+        val widthPx = with(LocalDensity.current) { maxWidth.toPx() }
+
+        LazyColumn(
+            state = listState,
+            modifier = Modifier.fillMaxSize(),
+            contentPadding = PaddingValues(16.dp),
+            verticalArrangement = Arrangement.spacedBy(24.dp)
+        ) {
+            items(count = minOf(textSource.pageCount, geometry.pageCount), key = { it }) { pageIndex ->
+                ReflowPageItem(
+                    textSource = textSource,
+                    session = session,
+                    geometry = geometry,
+                    pageIndex = pageIndex,
+                    widthPx = widthPx
+                )
+            }
+        }
+    }
+}
+
+@Composable
+private fun ReflowPageItem(
+    textSource: PageTextSource,
+    session: PdfRenderSession,
+    geometry: PageGeometryTable,
+    pageIndex: Int,
+    widthPx: Float
+) {
+    var page by remember(pageIndex) {
+        mutableStateOf(
+            PageTextCache.get(textSource.fingerprint, pageIndex)?.let {
+                if (it.isEmpty()) ReflowPage.Image else ReflowPage.Text(it)
+            } ?: ReflowPage.Loading
+        )
+    }
+
+    LaunchedEffect(pageIndex) {
+        if (page == ReflowPage.Loading) {
+            page = try {
+                textSource.getText(pageIndex)?.let { ReflowPage.Text(it) } ?: ReflowPage.Image
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                e.printStackTrace()
+                ReflowPage.Image
+            }
+        }
+    }
+
+    Column(modifier = Modifier.fillMaxWidth()) {
+        Text(
+            text = "Page ${pageIndex + 1}",
+            style = MaterialTheme.typography.labelMedium,
+            color = MaterialTheme.colorScheme.onSurfaceVariant
+        )
+        when (val current = page) {
+            // Keeps unextracted pages from collapsing to nothing while scrolling
+            ReflowPage.Loading -> Spacer(modifier = Modifier.height(200.dp))
+            is ReflowPage.Text -> Text(
+                text = current.text,
+                style = MaterialTheme.typography.bodyLarge
+            )
+            ReflowPage.Image -> ContinuousPageItem(
+                session = session,
+                pageIndex = pageIndex,
+                aspectRatio = geometry.aspectRatio(pageIndex),
+                scale = geometry.fitScale(pageIndex, widthPx.roundToInt(), Int.MAX_VALUE)
+            )
+        }
+    }
+}
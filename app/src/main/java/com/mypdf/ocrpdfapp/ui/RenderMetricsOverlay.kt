@@ -0,0 +1,78 @@
+package com.mypdf.ocrpdfapp.ui
+
+import androidx.compose.foundation.background
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.layout.padding
+import androidx.compose.material3.Text
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.unit.dp
+import androidx.compose.ui.unit.sp
+import com.mypdf.ocrpdfapp.render.LookupStats
+import com.mypdf.ocrpdfapp.render.RenderMetrics
+import com.mypdf.ocrpdfapp.render.RenderStage
+import com.mypdf.ocrpdfapp.render.StageStats
+import kotlinx.coroutines.delay
+import java.util.Locale
+
+private val OVERLAY_STAGES = setOf(
+    RenderStage.QUEUE_WAIT,
+    RenderStage.RENDERER_WAIT,
+    RenderStage.DISK_READ,
+    RenderStage.RENDER,
+    RenderStage.UPLOAD,
+    RenderStage.PAGE_TOTAL,
+    RenderStage.FIRST_PAGE,
+    RenderStage.PAGE_FLIP
+)
+
+/** Live p50/p95 per render stage and cache hit ratios, drawn over the viewer when enabled. */
+@Composable
+fun RenderMetricsOverlay(modifier: Modifier = Modifier) {
+    var stages by remember { mutableStateOf(emptyList<StageStats>()) }
+    var lookups by remember { mutableStateOf(emptyList<LookupStats>()) }
+
+    LaunchedEffect(Unit) {
+        while (true) {
+            stages = RenderMetrics.stageStats().filter { it.stage in OVERLAY_STAGES }
+            lookups = RenderMetrics.lookupStats()
+            delay(1000)
+        }
+    }
+
+    Column(
+        modifier = modifier
+            .background(Color.Black.copy(alpha = 0.6f))
+            .padding(6.dp)
+    ) {
+        stages.forEach { stats ->
+            OverlayLine(
+                String.format(
+                    Locale.US, "%-13s %6.1f %6.1f",
+                    stats.stage.name.lowercase(), stats.p50Ms, stats.p95Ms
+                )
+            )
+        }
+        lookups.forEach { stats ->
+            OverlayLine(String.format(Locale.US, "%-13s %5.0f%%", stats.name, stats.hitRatio * 100))
+        }
+        OverlayLine("alloc ${RenderMetrics.allocatedBytes() / (1024 * 1024)} MB")
+    }
+}
+
+@Composable
+private fun OverlayLine(text: String) {
+    Text(
+        text = text,
+        color = Color.White,
+        fontSize = 10.sp,
+        fontFamily = FontFamily.Monospace
+    )
+}
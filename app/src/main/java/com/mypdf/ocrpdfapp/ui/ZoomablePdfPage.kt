@@ -0,0 +1,210 @@
+package com.mypdf.ocrpdfapp.ui
+
+import android.graphics.Bitmap
+import androidx.compose.foundation.Canvas
+import androidx.compose.foundation.Image
+import androidx.compose.foundation.gestures.detectTransformGestures
+import androidx.compose.foundation.layout.Box
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
+import androidx.compose.runtime.snapshotFlow
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.draw.clipToBounds
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.geometry.Size
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.graphics.ImageBitmap
+import androidx.compose.ui.graphics.asImageBitmap
+import androidx.compose.ui.graphics.graphicsLayer
+import androidx.compose.ui.input.pointer.pointerInput
+import androidx.compose.ui.layout.onSizeChanged
+import androidx.compose.ui.unit.IntOffset
+import androidx.compose.ui.unit.IntSize
+import com.mypdf.ocrpdfapp.render.BitmapPool
+import com.mypdf.ocrpdfapp.render.PdfRenderSession
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.collectLatest
+import kotlin.math.roundToInt
+
+private const val MAX_ZOOM = 6f
+private const val SETTLE_DELAY_MS = 200L
+private val HIGHLIGHT = Color(0x66FFEB3B)
+private val ACTIVE_HIGHLIGHT = Color(0x88FF9800)
+
+/** A sharp render of the visible part of the page, valid only for the transform it was made for. */
+private class PageRegion(
+    val bitmap: Bitmap,
+    val image: ImageBitmap,
+    val zoom: Float,
+    val offset: Offset,
+    val topLeft: IntOffset,
+    val size: IntSize
+)
+
+/**
+ * Shows [bitmap] (the page rendered to fit) with pinch zoom and pan. While zoomed, the
+ * visible region is re-rendered at screen resolution once the gesture settles, so the page
+ * is sharp at any zoom while memory stays at one fitted page plus one screenful.
+ *
+ * [highlights] are search hits as flat [left, top, right, bottom, ...] boxes in page points
+ * (see [com.mypdf.ocrpdfapp.render.PageWordIndex.find]); [activeHighlight] is drawn stronger.
+ */
+@Composable
+fun ZoomablePdfPage(
+    session: PdfRenderSession,
+    pageIndex: Int,
+    pageWidth: Int,
+    pageHeight: Int,
+    bitmap: Bitmap,
+    modifier: Modifier = Modifier,
+    highlights: List<FloatArray> = emptyList(),
+    activeHighlight: FloatArray? = null
+) {
+    var zoom by remember(pageIndex) { mutableStateOf(1f) }
+    var offset by remember(pageIndex) { mutableStateOf(Offset.Zero) }
+    var viewSize by remember { mutableStateOf(IntSize.Zero) }
+    var region by remember(pageIndex) { mutableStateOf<PageRegion?>(null) }
+
+    DisposableEffect(region) {
+        val shown = region
+        onDispose { shown?.let { BitmapPool.release(it.bitmap) } }
+    }
+
+    LaunchedEffect(session, pageIndex, viewSize) {
+        snapshotFlow { zoom to offset }.collectLatest { (currentZoom, currentOffset) ->
+            if (currentZoom <= 1.01f || viewSize == IntSize.Zero) {
+                region = null
+                return@collectLatest
+            }
+            delay(SETTLE_DELAY_MS)
+            region = try {
+                renderVisibleRegion(session, pageIndex, pageWidth, pageHeight, viewSize, currentZoom, currentOffset)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                e.printStackTrace()
+                null
+            }
+        }
+    }
+
+    Box(
+        modifier = modifier
+            .clipToBounds()
+            .onSizeChanged { viewSize = it }
+            .pointerInput(pageIndex) {
+                detectTransformGestures { _, pan, gestureZoom, _ ->
+                    val newZoom = (zoom * gestureZoom).coerceIn(1f, MAX_ZOOM)
+                    // Keep the page edges from leaving the view
+                    val maxX = size.width * (newZoom - 1f) / 2f
+                    val maxY = size.height * (newZoom - 1f) / 2f
+                    offset = Offset(
+                        (offset.x + pan.x).coerceIn(-maxX, maxX),
+                        (offset.y + pan.y).coerceIn(-maxY, maxY)
+                    )
+                    zoom = newZoom
+                }
+            }
+    ) {
+        val imageBitmap = remember(bitmap) { bitmap.asImageBitmap() }
+        // Color modes are applied while drawing, so the same bitmaps serve every mode
+        val colors = rememberPageColors()
+        Image(
+            bitmap = imageBitmap,
+            contentDescription = "PDF page ${pageIndex + 1}",
+            colorFilter = colors.filter,
+            modifier = Modifier
+                .fillMaxSize()
+                .graphicsLayer {
+                    scaleX = zoom
+                    scaleY = zoom
+                    translationX = offset.x
+                    translationY = offset.y
+                }
+        )
+        region?.takeIf { it.zoom == zoom && it.offset == offset }?.let { sharp ->
+            Canvas(modifier = Modifier.fillMaxSize()) {
+                drawImage(sharp.image, dstOffset = sharp.topLeft, dstSize = sharp.size, colorFilter = colors.filter)
+            }
+        }
+        if (highlights.isNotEmpty()) {
+            // Same transform as the page, so the boxes follow zoom and pan
+            Canvas(
+                modifier = Modifier
+                    .fillMaxSize()
+                    .graphicsLayer {
+                        scaleX = zoom
+                        scaleY = zoom
+                        translationX = offset.x
+                        translationY = offset.y
+                    }
+            ) {
+                val fitScale = minOf(size.width / pageWidth, size.height / pageHeight)
+                val contentLeft = (size.width - pageWidth * fitScale) / 2f
+                val contentTop = (size.height - pageHeight * fitScale) / 2f
+                for (boxes in highlights) {
+                    val color = if (boxes === activeHighlight) ACTIVE_HIGHLIGHT else HIGHLIGHT
+                    for (i in 0 until boxes.size / 4) {
+                        val left = boxes[i * 4]
+                        val top = boxes[i * 4 + 1]
+                        drawRect(
+                            color = color,
+                            topLeft = Offset(contentLeft + left * fitScale, contentTop + top * fitScale),
+                            size = Size((boxes[i * 4 + 2] - left) * fitScale, (boxes[i * 4 + 3] - top) * fitScale)
+                        )
+                    }
+                }
+            }
+        }
+    }
+}
+
+private suspend fun renderVisibleRegion(
+    session: PdfRenderSession,
+    pageIndex: Int,
+    pageWidth: Int,
+    pageHeight: Int,
+    viewSize: IntSize,
+    zoom: Float,
+    offset: Offset
+): PageRegion? {
+    val viewWidth = viewSize.width.toFloat()
+    val viewHeight = viewSize.height.toFloat()
+    // Where the fitted page sits in the view before the zoom transform
+    val fitScale = minOf(viewWidth / pageWidth, viewHeight / pageHeight)
+    val contentLeft = (viewWidth - pageWidth * fitScale) / 2f
+    val contentTop = (viewHeight - pageHeight * fitScale) / 2f
+    val centerX = viewWidth / 2f
+    val centerY = viewHeight / 2f
+
+    // Undo the graphicsLayer transform (scale about the center, then translate) for the view bounds
+    val visibleLeft = maxOf(centerX + (0f - centerX - offset.x) / zoom, contentLeft)
+    val visibleTop = maxOf(centerY + (0f - centerY - offset.y) / zoom, contentTop)
+    val visibleRight = minOf(centerX + (viewWidth - centerX - offset.x) / zoom, contentLeft + pageWidth * fitScale)
+    val visibleBottom = minOf(centerY + (viewHeight - centerY - offset.y) / zoom, contentTop + pageHeight * fitScale)
+    if (visibleRight <= visibleLeft || visibleBottom <= visibleTop) return null
+
+    val renderScale = fitScale * zoom
+    val width = ((visibleRight - visibleLeft) * zoom).roundToInt().coerceIn(1, viewSize.width)
+    val height = ((visibleBottom - visibleTop) * zoom).roundToInt().coerceIn(1, viewSize.height)
+    val bitmap = session.renderRegion(
+        pageIndex,
+        left = (visibleLeft - contentLeft) / fitScale,
+        top = (visibleTop - contentTop) / fitScale,
+        scale = renderScale,
+        width = width,
+        height = height
+    ) ?: return null
+    val topLeft = IntOffset(
+        (centerX + (visibleLeft - centerX) * zoom + offset.x).roundToInt(),
+        (centerY + (visibleTop - centerY) * zoom + offset.y).roundToInt()
+    )
+    return PageRegion(bitmap, bitmap.asImageBitmap(), zoom, offset, topLeft, IntSize(width, height))
+}
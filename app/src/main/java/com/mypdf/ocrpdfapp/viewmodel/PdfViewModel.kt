@@ -107,9 +107,8 @@ class PdfViewModel : ViewModel() {
 
         viewModelScope.launch(Dispatchers.IO) {
             try {
-                repository.clearCache()
                 _isLoading.value = true
-                val pdfList = repository.getAllPdfFiles()
+                val pdfList = repository.refresh()
                 Log.d("PdfViewModel", "Refreshed ${pdfList.size} PDF files")
                 _pdfFiles.value = sortPdfFiles(pdfList)
                 filterPdfFiles()
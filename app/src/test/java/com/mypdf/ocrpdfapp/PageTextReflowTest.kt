@@ -0,0 +1,49 @@
+package com.mypdf.ocrpdfapp
+
+import com.mypdf.ocrpdfapp.render.PageTextSource
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/** Paragraph rebuilding in [PageTextSource.reflow] for the reflow reading mode. */
+class PageTextReflowTest {
+    private val full1 = "aaaa bbbb cccc dddd eeee ffff gggg"
+    private val full2 = "hhhh iiii jjjj kkkk llll mmmm nnnn"
+    private val full3 = "oooo pppp qqqq rrrr ssss tttt uuuu"
+
+    @Test
+    fun fullWidthLines_joinWithSpaces() {
+        assertEquals("$full1 $full2 $full3", PageTextSource.reflow("$full1\n$full2\n$full3"))
+    }
+
+    @Test
+    fun trailingHyphen_joinsTheWord() {
+        val raw = "aaaa bbbb cccc dddd eeee ffff exam-\nple hhhh iiii jjjj kkkk llll mmm"
+        assertEquals("aaaa bbbb cccc dddd eeee ffff example hhhh iiii jjjj kkkk llll mmm", PageTextSource.reflow(raw))
+    }
+
+    @Test
+    fun shortLine_endsTheParagraph() {
+        val raw = "$full1\n$full2\nlast line.\n$full3"
+        assertEquals("$full1 $full2 last line.\n\n$full3", PageTextSource.reflow(raw))
+    }
+
+    @Test
+    fun shortLine_winsOverATrailingHyphen() {
+        // A short line ending in a dash is a list item or heading, not a split word
+        val raw = "$full1\nsection two -\n$full2"
+        assertEquals("$full1 section two -\n\n$full2", PageTextSource.reflow(raw))
+    }
+
+    @Test
+    fun blankLines_endTheParagraphOnce() {
+        val raw = "$full1\n\n\n   \n$full2"
+        assertEquals("$full1\n\n$full2", PageTextSource.reflow(raw))
+    }
+
+    @Test
+    fun surroundingWhitespace_isTrimmed() {
+        assertEquals(full1, PageTextSource.reflow("\n   $full1   \n\n"))
+        assertEquals("", PageTextSource.reflow(""))
+    }
+}
@@ -0,0 +1,176 @@
+package com.mypdf.ocrpdfapp
+
+import com.itextpdf.text.Document
+import com.itextpdf.text.Rectangle
+import com.itextpdf.text.pdf.BaseFont
+import com.itextpdf.text.pdf.PdfName
+import com.itextpdf.text.pdf.PdfNumber
+import com.itextpdf.text.pdf.PdfReader
+import com.itextpdf.text.pdf.PdfWriter
+import com.itextpdf.text.pdf.parser.PdfTextExtractor
+import com.mypdf.ocrpdfapp.render.PageWordIndex
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.io.ByteArrayOutputStream
+
+/**
+ * Word boxes from [PageWordIndex.Builder] on small generated pages, checked in view space
+ * (top-left origin, /Rotate applied) as the viewer draws them.
+ */
+class PageWordIndexTest {
+    private val font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, false)
+
+    @Test
+    fun rotation0_boxSitsOnTheTextLine() {
+        val index = indexFor(0)
+        assertEquals(PAGE_WIDTH, index.pageWidth, 0f)
+        assertEquals(PAGE_HEIGHT, index.pageHeight, 0f)
+
+        val box = single(index.find("world"))
+        val left = FIRST_X + font.getWidthPoint("Hello ", FONT_SIZE)
+        val right = FIRST_X + font.getWidthPoint("Hello world", FONT_SIZE)
+        assertEquals(left, box[0], TOLERANCE)
+        assertEquals(right, box[2], TOLERANCE)
+        // Above the baseline for the ascent, below it for the descent
+        val baseline = PAGE_HEIGHT - FIRST_Y
+        assertTrue(box[1] < baseline && box[1] > baseline - FONT_SIZE)
+        assertTrue(box[3] > baseline && box[3] < baseline + FONT_SIZE / 2)
+    }
+
+    @Test
+    fun rotation90_mapsPdfXToViewY() {
+        val index = indexFor(90)
+        assertEquals(PAGE_HEIGHT, index.pageWidth, 0f)
+        assertEquals(PAGE_WIDTH, index.pageHeight, 0f)
+        for (query in ROTATION_QUERIES) {
+            val (l, t, r, b) = unrotatedBox(query)
+            assertBox(floatArrayOf(PAGE_HEIGHT - b, l, PAGE_HEIGHT - t, r), single(index.find(query)))
+        }
+    }
+
+    @Test
+    fun rotation180_flipsBothAxes() {
+        val index = indexFor(180)
+        assertEquals(PAGE_WIDTH, index.pageWidth, 0f)
+        assertEquals(PAGE_HEIGHT, index.pageHeight, 0f)
+        for (query in ROTATION_QUERIES) {
+            val (l, t, r, b) = unrotatedBox(query)
+            assertBox(floatArrayOf(PAGE_WIDTH - r, PAGE_HEIGHT - b, PAGE_WIDTH - l, PAGE_HEIGHT - t), single(index.find(query)))
+        }
+    }
+
+    @Test
+    fun rotation270_mapsPdfYToViewX() {
+        val index = indexFor(270)
+        assertEquals(PAGE_HEIGHT, index.pageWidth, 0f)
+        assertEquals(PAGE_WIDTH, index.pageHeight, 0f)
+        for (query in ROTATION_QUERIES) {
+            val (l, t, r, b) = unrotatedBox(query)
+            assertBox(floatArrayOf(t, PAGE_WIDTH - r, b, PAGE_WIDTH - l), single(index.find(query)))
+        }
+    }
+
+    @Test
+    fun partOfAWord_coversOnlyThoseChars() {
+        val box = single(indexFor(0).find("orl"))
+        assertEquals(FIRST_X + font.getWidthPoint("Hello w", FONT_SIZE), box[0], TOLERANCE)
+        assertEquals(FIRST_X + font.getWidthPoint("Hello worl", FONT_SIZE), box[2], TOLERANCE)
+    }
+
+    @Test
+    fun negativeRotation_isNormalized() {
+        val expected = single(indexFor(270).find("world"))
+        assertBox(expected, single(indexFor(-90).find("world")))
+    }
+
+    @Test
+    fun hitWithinOneLine_isOneBox() {
+        val box = single(indexFor(0).find("Hello   WORLD"))
+        assertEquals(FIRST_X, box[0], TOLERANCE)
+        assertEquals(FIRST_X + font.getWidthPoint("Hello world", FONT_SIZE), box[2], TOLERANCE)
+    }
+
+    @Test
+    fun hitAcrossTwoLines_hasOneBoxPerLine() {
+        val hits = indexFor(0).find("world again")
+        assertEquals(1, hits.size)
+        val boxes = hits[0]
+        assertEquals(8, boxes.size)
+        // "world" ends the first line, "again" starts the second one below it
+        assertEquals(FIRST_X + font.getWidthPoint("Hello ", FONT_SIZE), boxes[0], TOLERANCE)
+        assertEquals(FIRST_X, boxes[4], TOLERANCE)
+        assertEquals(FIRST_X + font.getWidthPoint("again", FONT_SIZE), boxes[6], TOLERANCE)
+        assertEquals(FIRST_Y - SECOND_Y, boxes[5] - boxes[1], TOLERANCE)
+    }
+
+    @Test
+    fun everyMatchIsReported_inPageOrder() {
+        val hits = indexFor(0).find("o")
+        // hell-o, w-o-rld, and none in "again there"
+        assertEquals(2, hits.size)
+        assertTrue(hits[0][0] < hits[1][0])
+    }
+
+    @Test
+    fun missingOrBlankQuery_findsNothing() {
+        val index = indexFor(0)
+        assertTrue(index.find("absent").isEmpty())
+        assertTrue(index.find("   ").isEmpty())
+    }
+
+    private fun unrotatedBox(query: String): FloatArray = single(indexFor(0).find(query))
+
+    private fun single(hits: List<FloatArray>): FloatArray {
+        assertEquals(1, hits.size)
+        assertEquals(4, hits[0].size)
+        return hits[0]
+    }
+
+    private fun assertBox(expected: FloatArray, actual: FloatArray) {
+        assertArrayEquals(expected, actual, TOLERANCE)
+    }
+
+    private fun indexFor(rotation: Int): PageWordIndex {
+        val reader = PdfReader(twoLinePage())
+        try {
+            if (rotation != 0) reader.getPageN(1).put(PdfName.ROTATE, PdfNumber(rotation))
+            val builder = PageWordIndex.Builder(reader.getCropBox(1), reader.getPageRotation(1))
+            PdfTextExtractor.getTextFromPage(reader, 1, builder)
+            return builder.build()
+        } finally {
+            reader.close()
+        }
+    }
+
+    private fun twoLinePage(): ByteArray {
+        val output = ByteArrayOutputStream()
+        val document = Document(Rectangle(PAGE_WIDTH, PAGE_HEIGHT))
+        val writer = PdfWriter.getInstance(document, output)
+        document.open()
+        writer.directContent.apply {
+            beginText()
+            setFontAndSize(font, FONT_SIZE)
+            setTextMatrix(FIRST_X, FIRST_Y)
+            showText("Hello world")
+            setTextMatrix(FIRST_X, SECOND_Y)
+            showText("again there")
+            endText()
+        }
+        document.close()
+        return output.toByteArray()
+    }
+
+    companion object {
+        private const val PAGE_WIDTH = 600f
+        private const val PAGE_HEIGHT = 800f
+        private const val FONT_SIZE = 12f
+        private const val FIRST_X = 100f
+        private const val FIRST_Y = 700f
+        private const val SECOND_Y = 680f
+        private const val TOLERANCE = 0.5f
+
+        // A whole word and part of one, whose chars run backwards or downwards when rotated
+        private val ROTATION_QUERIES = listOf("world", "orl")
+    }
+}